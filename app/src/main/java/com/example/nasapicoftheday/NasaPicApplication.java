@@ -0,0 +1,76 @@
+package com.example.nasapicoftheday;
+
+import android.app.Application;
+
+import com.example.nasapicoftheday.dao.ImageDatabase;
+import com.example.nasapicoftheday.dao.ImageRepository;
+import com.example.nasapicoftheday.dao.ImageWriteQueue;
+import com.example.nasapicoftheday.download.DownloadPipeline;
+import com.example.nasapicoftheday.download.DownloadScheduler;
+import com.example.nasapicoftheday.download.DownloadStatistics;
+import com.example.nasapicoftheday.images.BitmapCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The NasaPicApplication class holds the application-scoped resources shared by every activity.
+ *
+ * @author Caitlin Ross
+ */
+public class NasaPicApplication extends Application {
+    /** How long a deleted image can still be restored before it is purged, in milliseconds */
+    private static final long DELETED_IMAGE_RETENTION = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Opens the shared image database and starts loading the image repository as soon as the application starts,
+     * and purges images that were deleted long enough ago. All of it runs on a background thread: opening the
+     * database runs its migrations, which can take seconds on the first launch after an upgrade.
+     * Also has the download scheduler keep statistics of where downloads spend their time.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        DownloadScheduler.getInstance(this).setMetrics(new DownloadStatistics());
+        Thread opener = new Thread(() -> {
+            ImageDatabase.getInstance(this);
+            ImageRepository.getInstance(this);
+            ImageWriteQueue.getInstance(this).purgeDeletedImages(System.currentTimeMillis() - DELETED_IMAGE_RETENTION);
+        }, "ImageDatabase-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
+    /**
+     * Shrinks or empties the shared bitmap cache when the system is short of memory.
+     *
+     * @param level how urgently memory is needed
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapCache.getInstance(this).trimMemory(level);
+    }
+
+    /**
+     * Empties the shared bitmap cache when the whole system is short of memory.
+     */
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        BitmapCache.getInstance(this).clear();
+    }
+
+    /**
+     * Stops the download workers, finishes any queued writes, then closes the shared image database.
+     * Android only calls this in emulated processes, never on a device, where the process is simply killed; nothing
+     * here is needed for the data to be safe (see ImageDatabase.shutdown).
+     */
+    @Override
+    public void onTerminate() {
+        DownloadPipeline.shutdown();
+        DownloadScheduler.shutdown();
+        ImageWriteQueue.shutdown();
+        ImageDatabase.shutdown();
+        super.onTerminate();
+    }
+}
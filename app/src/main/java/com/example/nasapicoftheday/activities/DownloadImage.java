@@ -4,12 +4,9 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
-import android.annotation.SuppressLint;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.format.Formatter;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -21,33 +18,36 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.example.nasapicoftheday.dao.ImageDao;
+import com.example.nasapicoftheday.dao.ImageWriteQueue;
 import com.example.nasapicoftheday.datamodel.Date;
 import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.download.DownloadJob;
+import com.example.nasapicoftheday.download.DownloadJobListener;
+import com.example.nasapicoftheday.download.DownloadPipeline;
+import com.example.nasapicoftheday.download.DownloadProgress;
 import com.example.nasapicoftheday.R;
 import com.example.nasapicoftheday.menus.Activity;
 import com.example.nasapicoftheday.menus.NavigationDrawer;
 import com.google.android.material.navigation.NavigationView;
 
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-
 /**
  * The DownloadImage class contains the functionality for the Download Image activity.
  *
  * @author Caitlin Ross
  */
 public class DownloadImage extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
+    /** Key for the saved state flag recording that the result was already shown */
+    private static final String RESULT_SHOWN_KEY = "resultShown";
+
+    /** The date being downloaded */
+    private Date date;
+    /** The pipeline running the download, which outlives this activity */
+    private DownloadPipeline pipeline;
+    /** True once the downloaded image has been shown, by this activity or the one it replaced */
+    private boolean resultShown = false;
+    /** Updates this activity as the download progresses; attached only while the activity is started */
+    private final DownloadJobListener observer = this::onJobStateChanged;
+
     /**
      * Creates the Download Image activity and adds the functionality.
      *
@@ -67,11 +67,54 @@ public class DownloadImage extends AppCompatActivity implements NavigationView.O
 
         // Get the Bundle with the date info
         Bundle dateBundle = this.getIntent().getBundleExtra(NewImage.DATE_BUNDLE_KEY);
-        Date date = new Date(dateBundle);
+        date = new Date(dateBundle);
+        if (savedInstanceState != null) {
+            resultShown = savedInstanceState.getBoolean(RESULT_SHOWN_KEY, false);
+        }
+
+        // Start the download, or pick up the one started before the activity was recreated
+        pipeline = DownloadPipeline.getInstance(this);
+        pipeline.start(date);
+    }
 
-        // Create a query to download the image for the provided date
-        ImageQuery query = new ImageQuery(this);
-        query.execute(date);
+    /**
+     * Attaches to the download while the activity is visible, which shows its current progress straight away.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        pipeline.attach(date, observer);
+    }
+
+    /**
+     * Detaches from the download so the pipeline does not hold on to the activity.
+     */
+    @Override
+    protected void onStop() {
+        pipeline.detach(observer);
+        super.onStop();
+    }
+
+    /**
+     * Records that the result was shown, so the recreated activity keeps the name the user typed.
+     *
+     * @param outState the Bundle the state is saved in
+     */
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(RESULT_SHOWN_KEY, resultShown);
+    }
+
+    /**
+     * Cancels the download if the user leaves before it finishes. A recreated activity carries on with it instead.
+     */
+    @Override
+    protected void onDestroy() {
+        if (isFinishing()) {
+            pipeline.cancel(date);
+        }
+        super.onDestroy();
     }
 
     /**
@@ -112,224 +155,129 @@ public class DownloadImage extends AppCompatActivity implements NavigationView.O
     }
 
     /**
-     * The ImageRequest class handles the background API call to NASA.
+     * Updates the GUI as the download moves through its stages and when it finishes.
+     *
+     * @param job the download job
      */
-    static class ImageQuery extends AsyncTask<Date, Integer, Image> {
-        /** The Activity calling the AsyncTask */
-        @SuppressLint("StaticFieldLeak")
-        private final AppCompatActivity parentActivity;
-
-        /**
-         * Constructor, initializes the context.
-         *
-         * @param context the context of the calling Activity
-         */
-        public ImageQuery(AppCompatActivity context) {
-            this.parentActivity = context;
-        }
-
-        /**
-         * Calls NASA's API to download the relevant image.
-         *
-         * @param dates selected date of the image to be downloaded
-         * @return the downloaded image
-         */
-        @Override
-        protected Image doInBackground(Date... dates) {
-            Image newImage = null;
-
-            // Update the progress
-            publishProgress(0);
-
-            // The entire section of code that uses resources is surrounded in a try-catch block
-            try {
-                JSONObject nasaResponse = getJSONFromURL(dates[0]);
-
-                // Update the progress
-                publishProgress(25);
-
-                // Extract the image's download URL and title
-                URL imageURL = new URL(nasaResponse.getString("url"));
-                String imageTitle = nasaResponse.getString("title");
-                String imageFile = imageTitle + ".jpeg";
-
-                // Update the progress
-                publishProgress(50);
-
-                // Download the image from the URL if it doesn't exist on disk
-                Bitmap bitmap;
-                if(!fileExists(imageFile)) {
-                    bitmap = downloadImage(imageURL);
-                } else {
-                    // This feels useless, but I don't know why
-                    bitmap = openImage(imageFile);
-                }
-
-                // Update the progress
-                publishProgress(75);
-
-                // Save the image
-                FileOutputStream outputStream = parentActivity.openFileOutput(imageFile, MODE_PRIVATE);
-                if (bitmap != null) {
-                    bitmap.compress(Bitmap.CompressFormat.JPEG, 80, outputStream);
-                }
-                outputStream.flush();
-                outputStream.close();
-
-                // Make a new Image object
-                newImage = new Image(imageTitle, new Date(), dates[0], imageFile);
-
-                // Update the progress
-                publishProgress(100);
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            // Save the image data to the database
-            if(newImage != null) {
-                ImageDao dao = new ImageDao();
-                dao.saveImage(newImage, parentActivity);
-            }
-
-            // Return the image
-            return newImage;
+    private void onJobStateChanged(DownloadJob job) {
+        // A state may be delivered again after the activity has already acted on it
+        if (isFinishing()) {
+            return;
         }
-
-        /**
-         * Updates the progress bar as progress is made on the download.
-         *
-         * @param values the values (0-100) indicating the progress
-         */
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            ProgressBar progressBar = parentActivity.findViewById(R.id.download_progress_bar);
-            progressBar.setProgress(values[0]);
-        }
-
-        /**
-         * Updates the GUI when the background task is finished executing.
-         *
-         * @param pic the downloaded image
-         */
-        @Override
-        protected void onPostExecute(Image pic) {
-            //Use a Toast to inform the user that the download is complete
-            Toast.makeText(parentActivity, R.string.download_complete_msg, Toast.LENGTH_SHORT).show();
-
-            // Remove the "Download in progress..." message
-            TextView downloadInProgress = parentActivity.findViewById(R.id.download_progress_label);
-            downloadInProgress.setVisibility(View.GONE);
-
-            // Remove the progress bar
-            ProgressBar progressBar = parentActivity.findViewById(R.id.download_progress_bar);
-            progressBar.setVisibility(View.GONE);
-
-            // Update the name field's hint with the image's title
-            EditText suggestedName = parentActivity.findViewById(R.id.download_image_name_field);
-            suggestedName.setText(pic.getTitle());
-
-            // Display the image
-            ImageView imageView = parentActivity.findViewById(R.id.download_image);
-            imageView.setImageBitmap(pic.loadImage(parentActivity));
-
-            // Enable the Save button
-            Button saveButton = parentActivity.findViewById(R.id.download_save_name_button);
-            saveButton.setEnabled(true);
-            Intent goToSavedImages = new Intent(parentActivity, SavedImages.class);
-            saveButton.setOnClickListener((click) -> {
-                ImageDao dao = new ImageDao();
-                dao.updateImage(pic, suggestedName.getText().toString(), parentActivity);
-                parentActivity.startActivity(goToSavedImages);
-            });
+        switch (job.getState()) {
+            case QUEUED:
+            case RUNNING:
+                showProgress(job.getStage(), job.getProgress());
+                break;
+            case SUCCEEDED:
+                showImage(job.getImage());
+                break;
+            case SKIPPED:
+            case FAILED:
+                // There is no image, so tell the user why and go back to choosing a date
+                int message = (job.getState() == DownloadJob.State.SKIPPED)
+                        ? R.string.download_not_image_msg : R.string.download_failed_msg;
+                Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+                finish();
+                break;
+            case CANCELLED:
+                finish();
+                break;
         }
+    }
 
-        /**
-         * Helper method to determine if a file already exists.
-         *
-         * @param fileName the name of the file to verify
-         * @return true if the file already exists
-         */
-        private boolean fileExists(String fileName) {
-            File file = parentActivity.getBaseContext().getFileStreamPath(fileName);
-            return file.exists();
+    /**
+     * Updates the progress bar and label. While the picture is downloading the bar follows the bytes received and
+     * the label shows the size, speed and time left; the other stages move the bar a step at a time.
+     *
+     * @param stage the current stage, or null if the download has not started
+     * @param progress the picture download's progress, or null if it has not started
+     */
+    private void showProgress(DownloadJob.Stage stage, DownloadProgress progress) {
+        ProgressBar progressBar = findViewById(R.id.download_progress_bar);
+        TextView label = findViewById(R.id.download_progress_label);
+        if (stage == null) {
+            progressBar.setProgress(0);
+            return;
         }
-
-        /**
-         * Uses the given date to generate a JSONObject using the NASA Image of the Day API.
-         *
-         * @param date the date the user selected
-         * @return a JSONObject containing the relevant information about the Image of the Day
-         * @throws Exception if something goes wrong
-         */
-        private JSONObject getJSONFromURL(Date date) throws Exception {
-            InputStream response = null;
-            HttpURLConnection connection = null;
-            BufferedReader reader = null;
-            JSONObject json;
-            try{
-                // Create a URL with the given date to query NASA for the image's download URL
-                URL url = new URL("https://api.nasa.gov/planetary/apod?api_key=CD2JkCnbAMdQpZ4O3a0vxBrnRfpIQVJn4fGUp1Sz&date=" + date.toString());
-                connection = (HttpURLConnection) url.openConnection();
-                response = connection.getInputStream();
-                reader = new BufferedReader(new InputStreamReader(response, StandardCharsets.UTF_8), 8);
-
-                // Add all lines from the response into a StringBuilder
-                StringBuilder sb = new StringBuilder();
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line).append('\n');
+        switch (stage) {
+            case METADATA:
+                progressBar.setProgress(0);
+                break;
+            case FETCH:
+                // The picture is most of the wait, so it gets most of the bar
+                double fraction = (progress == null) ? -1 : progress.getFraction();
+                progressBar.setProgress(10 + (int) (80 * Math.max(0, fraction)));
+                if (progress != null) {
+                    label.setText(describe(progress));
                 }
-
-                json =  new JSONObject(sb.toString());
-            } finally {
-                // Close the current connection before opening the next
-                if (reader != null ) {
-                    reader.close();
-                }
-                if (response != null) {
-                    response.close();
-                }
-                if (connection != null) {
-                    connection.disconnect();
-                }
-            }
-            return json;
+                break;
+            case PERSIST:
+                progressBar.setProgress(90);
+                break;
+            case INDEX:
+                progressBar.setProgress(95);
+                break;
         }
+    }
 
-        /**
-         * Downloads the image from the given URL.
-         *
-         * @param imageURL the URL where the image is located
-         * @return a Bitmap of the image
-         * @throws Exception if something goes wrong
-         */
-        private Bitmap downloadImage(URL imageURL) throws Exception {
-            Bitmap bitmap = null;
-            HttpURLConnection conn = (HttpURLConnection) imageURL.openConnection();
-            conn.connect();
-            if (conn.getResponseCode() == 200) {
-                bitmap = BitmapFactory.decodeStream(conn.getInputStream());
-            }
-            return bitmap;
+    /**
+     * Describes a picture download's progress for the progress label.
+     *
+     * @param progress the progress
+     * @return e.g. "Download in progress… 1.2 MB of 3.4 MB" and, once it has been measured, "450 kB/s, about 5 s left"
+     */
+    private String describe(DownloadProgress progress) {
+        String received = Formatter.formatShortFileSize(this, progress.getBytesTransferred());
+        String text = (progress.getTotalBytes() < 0)
+                ? getString(R.string.download_progress_size_unknown, received)
+                : getString(R.string.download_progress_size, received,
+                        Formatter.formatShortFileSize(this, progress.getTotalBytes()));
+        if (progress.getBytesPerSecond() > 0) {
+            String rate = Formatter.formatShortFileSize(this, (long) progress.getBytesPerSecond());
+            text += "\n" + ((progress.getEtaMillis() < 0)
+                    ? getString(R.string.download_progress_rate_only, rate)
+                    : getString(R.string.download_progress_rate, rate,
+                            (int) Math.ceil(progress.getEtaMillis() / 1000.0)));
         }
+        return text;
+    }
 
-        /**
-         * Opens the image from the disk
-         *
-         * @param fileName the name of the image file
-         * @return a Bitmap of the image
-         */
-        private Bitmap openImage(String fileName) {
-            FileInputStream inputStream;
-            Bitmap bitmap = null;
-            try {
-                inputStream = parentActivity.openFileInput(fileName);
-                bitmap = BitmapFactory.decodeStream(inputStream);
-            } catch (FileNotFoundException fe) {
-                fe.printStackTrace();
-            }
-            return bitmap;
+    /**
+     * Shows the downloaded image and lets the user name it.
+     *
+     * @param pic the downloaded image
+     */
+    private void showImage(Image pic) {
+        // Remove the "Download in progress..." message
+        TextView downloadInProgress = findViewById(R.id.download_progress_label);
+        downloadInProgress.setVisibility(View.GONE);
+
+        // Remove the progress bar
+        ProgressBar progressBar = findViewById(R.id.download_progress_bar);
+        progressBar.setVisibility(View.GONE);
+
+        // Only the first time: tell the user the download is complete and suggest the image's title as its name
+        EditText suggestedName = findViewById(R.id.download_image_name_field);
+        if (!resultShown) {
+            resultShown = true;
+            Toast.makeText(this, R.string.download_complete_msg, Toast.LENGTH_SHORT).show();
+            suggestedName.setText(pic.getTitle());
         }
+
+        // Display the image
+        ImageView imageView = findViewById(R.id.download_image);
+        int width = getResources().getDisplayMetrics().widthPixels;
+        imageView.setImageBitmap(pic.loadImage(this, width, width));
+
+        // Enable the Save button
+        Button saveButton = findViewById(R.id.download_save_name_button);
+        saveButton.setEnabled(true);
+        Intent goToSavedImages = new Intent(this, SavedImages.class);
+        saveButton.setOnClickListener((click) -> {
+            ImageWriteQueue.getInstance(this).updateImage(pic, suggestedName.getText().toString());
+            pipeline.forget(date);
+            startActivity(goToSavedImages);
+        });
     }
-}
\ No newline at end of file
+}
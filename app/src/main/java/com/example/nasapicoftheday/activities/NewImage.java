@@ -16,15 +16,21 @@ import android.view.MenuItem;
 import android.widget.Button;
 import android.widget.DatePicker;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import com.example.nasapicoftheday.dao.ImageDao;
+import com.example.nasapicoftheday.dao.ImageRepository;
 import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+import com.example.nasapicoftheday.download.DownloadJob;
+import com.example.nasapicoftheday.download.ImageDownloader;
 import com.example.nasapicoftheday.R;
 import com.example.nasapicoftheday.menus.Activity;
 import com.example.nasapicoftheday.menus.NavigationDrawer;
 import com.google.android.material.navigation.NavigationView;
 
+import java.io.IOException;
 import java.util.Calendar;
+import java.util.List;
 
 /**
  * The NewImage class contains the functionality for the New Image Activity.
@@ -34,6 +40,11 @@ import java.util.Calendar;
 public class NewImage extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
     /** Static constant for requesting the Date bundle */
     public static final String DATE_BUNDLE_KEY = "com.example.nasapicoftheday.DateSelected";
+    /** How many days, starting on the selected date, the backfill button saves */
+    private static final int BACKFILL_DAYS = 30;
+
+    /** The first day of the range the backfill button saves */
+    private Date backfillStart;
 
     /**
      * Creates the New Image activity and adds the functionality.
@@ -62,6 +73,14 @@ public class NewImage extends AppCompatActivity implements NavigationView.OnNavi
         // Just in case, disable the button. This should be redundant.
         confirmDateButton.setEnabled(false);
 
+        // Set up the button saving every missing image in the days from the selected date
+        Button backfillButton = findViewById(R.id.new_backfill_button);
+        backfillButton.setText(getString(R.string.new_backfill_button, BACKFILL_DAYS));
+        backfillButton.setOnClickListener( (click) -> {
+            backfillButton.setEnabled(false);
+            backfill(backfillStart);
+        });
+
         // Create the date picker dialog when the user selects the "select date" button
         Button selectDateButton = findViewById(R.id.new_select_date_button);
         DialogFragment dateFragment = new DatePickerFragment();
@@ -75,9 +94,12 @@ public class NewImage extends AppCompatActivity implements NavigationView.OnNavi
 
             try{
                 Date date = new Date(year, month, day);
+                // The days from a saved date may still have images to save
+                backfillStart = date;
+                backfillButton.setEnabled(true);
                 // Check if the image for that date has already been downloaded
-                ImageDao dao = new ImageDao();
-                if(!dao.exists(date, this)) {
+                ImageRepository repository = ImageRepository.getInstance(this);
+                if(!repository.exists(date)) {
                     String dateString = getString(R.string.new_selected_date) +
                             " " + Date.getMonthName(month) +
                             " " + day +
@@ -93,11 +115,37 @@ public class NewImage extends AppCompatActivity implements NavigationView.OnNavi
                 // This is reached if the date is invalid
                 dateSelected.setText(getString(R.string.new_invalid_date_error));
                 confirmDateButton.setEnabled(false);
+                backfillButton.setEnabled(false);
             }
         });
         selectDateButton.setOnClickListener( (click) -> dateFragment.show(fragmentManager, "datePicker"));
     }
 
+    /**
+     * Schedules the download of every image not saved yet in the BACKFILL_DAYS days from a date, up to today.
+     * The APOD entries are read off the main thread, one request for the whole range; the downloads then run in the
+     * background lane of the download scheduler, and each image appears in the saved images list when it is saved.
+     *
+     * @param start the first day of the range
+     */
+    private void backfill(Date start) {
+        DateRange range = DateRange.ofEpochDays(start.toEpochDay(), start.toEpochDay() + BACKFILL_DAYS - 1);
+        ImageDownloader downloader = new ImageDownloader(getApplicationContext());
+        Thread thread = new Thread(() -> {
+            String message;
+            try {
+                List<DownloadJob> jobs = downloader.backfill(range);
+                message = getString(R.string.new_backfill_started_msg, jobs.size());
+            } catch (IOException e) {
+                message = getString(R.string.new_backfill_error);
+            }
+            String shown = message;
+            runOnUiThread(() -> Toast.makeText(getApplicationContext(), shown, Toast.LENGTH_LONG).show());
+        }, "NewImage-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Inflates the toolbar's layout when the menu is created.
      *
@@ -4,40 +4,88 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.BaseAdapter;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
 
+import com.example.nasapicoftheday.dao.ImageChangeListener;
 import com.example.nasapicoftheday.dao.ImageDao;
+import com.example.nasapicoftheday.dao.ImageRepository;
+import com.example.nasapicoftheday.dao.ImageWriteQueue;
+import com.example.nasapicoftheday.datamodel.Date;
 import com.example.nasapicoftheday.datamodel.Image;
 import com.example.nasapicoftheday.R;
 import com.example.nasapicoftheday.fragments.ViewImage;
+import com.example.nasapicoftheday.images.ImageLoader;
 import com.example.nasapicoftheday.menus.Activity;
 import com.example.nasapicoftheday.menus.NavigationDrawer;
 import com.google.android.material.navigation.NavigationView;
 import com.google.android.material.snackbar.Snackbar;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The SavedImages class contains the functionality for the Saved Images activity.
  *
  * @author Caitlin Ross
  */
-public class SavedImages extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
-    /** List of Image objects */
-    ArrayList<Image> imageList;
+public class SavedImages extends AppCompatActivity
+        implements NavigationView.OnNavigationItemSelectedListener, ImageChangeListener {
+    /** Maximum number of search results shown */
+    private static final int SEARCH_LIMIT = 100;
+    /** How long typing must pause before the search runs, in milliseconds */
+    private static final long SEARCH_DELAY_MILLIS = 150;
+    /** Number of rows above and below the screen whose thumbnails are decoded ahead of time */
+    private static final int PREFETCH_ROWS = 6;
+
+    /** List of Image objects, shared with the ImageRepository and never modified here */
+    List<Image> imageList = Collections.emptyList();
     /** Adapter to populate the ListView */
     ImageListAdapter adapter;
+    /** The in-memory copy of every saved image */
+    private ImageRepository repository;
+    /** Results of the current search, best match first, or null if the user is not searching */
+    private List<Image> searchResults;
+    /** The current search text */
+    private String searchQuery = "";
+    /** Runs the searches off the main thread, one at a time */
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SavedImages-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Used to wait for a pause in typing, and to publish search results */
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    /** Starts a search for the current text once typing pauses */
+    private final Runnable searchRunner = this::startSearch;
+    /** Number of the latest search started; results of any earlier one are dropped (main thread only) */
+    private int searchSequence = 0;
+    /** Decodes the thumbnails off the main thread */
+    private ImageLoader imageLoader;
+    /** First visible row when the thumbnails were last prefetched, or -1 */
+    private int prefetchedFirst = -1;
+    /** Number of visible rows when the thumbnails were last prefetched */
+    private int prefetchedCount = 0;
 
     /**
      * Creates the Saved Images activity and add the functionality
@@ -56,44 +104,123 @@ public class SavedImages extends AppCompatActivity implements NavigationView.OnN
         // Set up the navigation drawer
         NavigationDrawer.init(this, this, toolbar, Activity.SAVED);
 
-        // Load the images from the database
+        // The images come from the in-memory repository, which is kept in step with the database's change events
         ImageDao dao = new ImageDao();
-        imageList = new ArrayList<>(dao.loadImages(this));
+        dao.addChangeListener(this, this);
+        repository = ImageRepository.getInstance(this);
 
         //Populate the ListView
         ListView imageListView = findViewById(R.id.view_image_list);
+        imageLoader = ImageLoader.getInstance(this);
         adapter = new ImageListAdapter();
         imageListView.setAdapter(adapter);
 
+        // Decode the thumbnails of the rows just outside the screen, so they are ready when scrolled to
+        imageListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) { }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisible, int visibleCount, int totalCount) {
+                prefetchAround(firstVisible, visibleCount);
+            }
+        });
+        repository.whenLoaded(this::updateList);
+
         // Add a listener to the List View to load the fragment/empty activity when an image is clicked
         imageListView.setOnItemClickListener( (parent, view, pos, id) -> {
-            Image selectedImage = imageList.get(pos);
+            Image selectedImage = shownImages().get(pos);
             Intent viewImage = new Intent(SavedImages.this, EmptyActivity.class);
             viewImage.putExtras(selectedImage.getBundle());
             startActivity(viewImage);
         });
 
+        // Search the saved images as the user types
+        EditText searchField = findViewById(R.id.saved_images_search_field);
+        searchField.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) { }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) { }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                searchQuery = text.toString().trim();
+                updateSearchResults();
+            }
+        });
+
         // Check if the user just deleted an image
         Bundle deleted = getIntent().getBundleExtra(ViewImage.IMAGE_KEY);
         if(deleted != null) {
-            // Extract the image data
-            Image deletedImage = new Image(deleted);
-            // Show the Snackbar to undo the deletion
+            // Extract the date of the deleted image
+            Date deletedDate = new Date(deleted);
+            // Show the Snackbar to undo the deletion, which clears the image's tombstone
             Snackbar.make(imageListView, R.string.fragment_delete_msg, Snackbar.LENGTH_LONG)
-                    .setAction(R.string.fragment_undo_delete, (c) -> {
-                        dao.saveImage(deletedImage, this);
-                        updateList();
-                    })
+                    .setAction(R.string.fragment_undo_delete, (c) ->
+                            ImageWriteQueue.getInstance(this).restoreImage(deletedDate))
                     .show();
         }
     }
 
     /**
-     * When the user comes back to the activity, the list of images is re-loaded from the database.
+     * Stops listening for database changes when the activity is destroyed.
+     */
+    @Override
+    protected void onDestroy() {
+        ImageDao dao = new ImageDao();
+        dao.removeChangeListener(this, this);
+        mainThread.removeCallbacks(searchRunner);
+        searchExecutor.shutdownNow();
+        imageLoader.prefetch(Collections.<String>emptyList());
+        super.onDestroy();
+    }
+
+    /**
+     * Shows a newly saved image.
+     *
+     * @param nasaDate the NASA date of the saved image
+     */
+    @Override
+    public void onImageInserted(Date nasaDate) {
+        updateList();
+    }
+
+    /**
+     * Re-binds a changed image's row, if it is showing.
+     *
+     * @param nasaDate the NASA date of the changed image
+     */
+    @Override
+    public void onImageUpdated(Date nasaDate) {
+        if (!searchQuery.isEmpty()) {
+            // The change may affect whether, and where, the image matches the search
+            updateList();
+            return;
+        }
+        imageList = repository.getImages();
+        int shownPosition = repository.indexOf(nasaDate);
+        if (shownPosition < 0) {
+            return;
+        }
+
+        // Only the changed row is re-bound; the rest of the list is untouched
+        ListView imageListView = findViewById(R.id.view_image_list);
+        int firstVisible = imageListView.getFirstVisiblePosition();
+        if (shownPosition >= firstVisible && shownPosition <= imageListView.getLastVisiblePosition()) {
+            View row = imageListView.getChildAt(shownPosition - firstVisible);
+            adapter.bindRow(row, shownImages().get(shownPosition));
+        }
+    }
+
+    /**
+     * Removes a deleted image from the list.
+     *
+     * @param nasaDate the NASA date of the deleted image
      */
     @Override
-    protected void onResume() {
-        super.onResume();
+    public void onImageDeleted(Date nasaDate) {
         updateList();
     }
 
@@ -135,17 +262,93 @@ public class SavedImages extends AppCompatActivity implements NavigationView.OnN
     }
 
     /**
-     * Reloads the images from the database and updates the ListView.
+     * Takes the latest images from the repository and updates the ListView.
      */
     private void updateList() {
-        // Reload the images from the database
-        ImageDao dao = new ImageDao();
-        imageList = new ArrayList<>(dao.loadImages(this));
+        imageList = repository.getImages();
+        if (!searchQuery.isEmpty()) {
+            updateSearchResults();
+        }
 
         // Notify the ListView that the data has updated
         adapter.notifyDataSetChanged();
     }
 
+    /**
+     * Re-runs the current search once typing (or a burst of changes) pauses, or clears the results straight away
+     * if the search field is empty. The results shown until then are those of the previous search.
+     */
+    private void updateSearchResults() {
+        mainThread.removeCallbacks(searchRunner);
+        if (searchQuery.isEmpty()) {
+            // Drop any search still running
+            searchSequence++;
+            searchResults = null;
+            adapter.notifyDataSetChanged();
+        } else {
+            mainThread.postDelayed(searchRunner, SEARCH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Runs a search for the current text in the background and shows its results, unless a later search has
+     * been started (or the search cleared) by the time they arrive.
+     */
+    private void startSearch() {
+        int sequence = ++searchSequence;
+        String query = searchQuery;
+        Context appContext = getApplicationContext();
+        searchExecutor.execute(() -> {
+            ImageDao dao = new ImageDao();
+            List<Image> results = dao.searchImages(query, SEARCH_LIMIT, appContext);
+            mainThread.post(() -> {
+                if (sequence != searchSequence || isDestroyed()) {
+                    return;
+                }
+                searchResults = results;
+                adapter.notifyDataSetChanged();
+            });
+        });
+    }
+
+    /**
+     * Prefetches the thumbnails of the rows just above and below the visible ones, nearest first, unless the
+     * visible rows are the same as last time.
+     *
+     * @param firstVisible the position of the first visible row
+     * @param visibleCount the number of visible rows
+     */
+    private void prefetchAround(int firstVisible, int visibleCount) {
+        if (firstVisible == prefetchedFirst && visibleCount == prefetchedCount) {
+            return;
+        }
+        prefetchedFirst = firstVisible;
+        prefetchedCount = visibleCount;
+
+        List<Image> shown = shownImages();
+        List<String> fileNames = new ArrayList<>(2 * PREFETCH_ROWS);
+        for (int distance = 1; distance <= PREFETCH_ROWS; distance++) {
+            int below = firstVisible + visibleCount - 1 + distance;
+            if (below < shown.size()) {
+                fileNames.add(shown.get(below).getFileName());
+            }
+            int above = firstVisible - distance;
+            if (above >= 0) {
+                fileNames.add(shown.get(above).getFileName());
+            }
+        }
+        imageLoader.prefetch(fileNames);
+    }
+
+    /**
+     * Returns the images currently shown in the ListView: the search results while searching, otherwise the saved images.
+     *
+     * @return the list of images being shown
+     */
+    private List<Image> shownImages() {
+        return (searchResults != null) ? searchResults : imageList;
+    }
+
     /**
      * The ImageListAdapter class is used to link the list of Image objects to the ListView widget
      */
@@ -157,7 +360,7 @@ public class SavedImages extends AppCompatActivity implements NavigationView.OnN
          */
         @Override
         public int getCount() {
-            return imageList.size();
+            return shownImages().size();
         }
 
         /**
@@ -168,7 +371,7 @@ public class SavedImages extends AppCompatActivity implements NavigationView.OnN
          */
         @Override
         public Object getItem(int position) {
-            return imageList.get(position);
+            return shownImages().get(position);
         }
 
         /**
@@ -199,22 +402,30 @@ public class SavedImages extends AppCompatActivity implements NavigationView.OnN
                 convertView = inflater.inflate(R.layout.image_list_item, parent, false);
             }
 
-            // Get the Image object to be displayed
-            Image i = imageList.get(position);
+            // Show the Image object at this position
+            bindRow(convertView, shownImages().get(position));
+            return convertView;
+        }
 
-            // Set the thumbnail image
-            ImageView thumbnail = convertView.findViewById(R.id.image_list_thumbnail);
-            thumbnail.setImageBitmap(i.loadImage(parent.getContext()));
+        /**
+         * Shows an image in a list item.
+         *
+         * @param row the list item's view
+         * @param i the image to show
+         */
+        void bindRow(View row, Image i) {
+            // Set the thumbnail image from the thumbnail store, decoded off the main thread; a recycled row's
+            // earlier request is cancelled, so it never shows another image's thumbnail
+            ImageView thumbnail = row.findViewById(R.id.image_list_thumbnail);
+            imageLoader.loadThumbnail(thumbnail, i.getFileName());
 
             // Set the image date (the day it was NASA's Image of the Day)
-            TextView imageDate = convertView.findViewById(R.id.image_list_date);
+            TextView imageDate = row.findViewById(R.id.image_list_date);
             imageDate.setText(i.getNasaDate().toString());
 
             // Set the image name (user-defined)
-            TextView imageName = convertView.findViewById(R.id.image_list_name);
+            TextView imageName = row.findViewById(R.id.image_list_name);
             imageName.setText(i.getName());
-
-            return convertView;
         }
     }
 }
\ No newline at end of file
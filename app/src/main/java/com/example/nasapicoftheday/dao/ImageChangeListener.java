@@ -0,0 +1,31 @@
+package com.example.nasapicoftheday.dao;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+/**
+ * The ImageChangeListener interface is notified when saved images are inserted, updated or deleted.
+ *
+ * @author Caitlin Ross
+ */
+public interface ImageChangeListener {
+    /**
+     * Called after an image is saved to the database.
+     *
+     * @param nasaDate the NASA date of the saved image
+     */
+    void onImageInserted(Date nasaDate);
+
+    /**
+     * Called after a saved image is changed in the database.
+     *
+     * @param nasaDate the NASA date of the changed image
+     */
+    void onImageUpdated(Date nasaDate);
+
+    /**
+     * Called after an image is deleted from the database.
+     *
+     * @param nasaDate the NASA date of the deleted image
+     */
+    void onImageDeleted(Date nasaDate);
+}
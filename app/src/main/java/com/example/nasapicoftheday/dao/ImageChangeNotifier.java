@@ -0,0 +1,91 @@
+package com.example.nasapicoftheday.dao;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * The ImageChangeNotifier class delivers ImageChangeListener events, each on the executor the listener registered with.
+ *
+ * @author Caitlin Ross
+ */
+class ImageChangeNotifier {
+    /** The registered listeners */
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to notify
+     * @param executor the executor the listener's methods are called on
+     */
+    void addListener(ImageChangeListener listener, Executor executor) {
+        registrations.add(new Registration(listener, executor));
+    }
+
+    /**
+     * Unregisters a listener. Events already handed to its executor may still be delivered.
+     *
+     * @param listener the listener to stop notifying
+     */
+    void removeListener(ImageChangeListener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * Notifies every listener that an image was inserted.
+     *
+     * @param nasaDate the NASA date of the image
+     */
+    void fireInserted(Date nasaDate) {
+        for (Registration registration : registrations) {
+            registration.executor.execute(() -> registration.listener.onImageInserted(nasaDate));
+        }
+    }
+
+    /**
+     * Notifies every listener that an image was updated.
+     *
+     * @param nasaDate the NASA date of the image
+     */
+    void fireUpdated(Date nasaDate) {
+        for (Registration registration : registrations) {
+            registration.executor.execute(() -> registration.listener.onImageUpdated(nasaDate));
+        }
+    }
+
+    /**
+     * Notifies every listener that an image was deleted.
+     *
+     * @param nasaDate the NASA date of the image
+     */
+    void fireDeleted(Date nasaDate) {
+        for (Registration registration : registrations) {
+            registration.executor.execute(() -> registration.listener.onImageDeleted(nasaDate));
+        }
+    }
+
+    /**
+     * A listener and the executor it is called on.
+     */
+    private static class Registration {
+        private final ImageChangeListener listener;
+        private final Executor executor;
+
+        /**
+         * Constructor.
+         *
+         * @param listener the listener to notify
+         * @param executor the executor the listener's methods are called on
+         */
+        Registration(ImageChangeListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+}
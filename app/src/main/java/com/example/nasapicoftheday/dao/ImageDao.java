@@ -1,15 +1,24 @@
 package com.example.nasapicoftheday.dao;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+import com.example.nasapicoftheday.datamodel.DateSet;
 import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.images.ThumbnailStore;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
 
 /**
  * The ImageDao class is used to read and write Image data to/from the database.
@@ -25,33 +34,61 @@ public class ImageDao {
      */
     public List<Image> loadImages(Context context) {
         List<Image> images = new ArrayList<>();
-        ImageOpener opener = new ImageOpener(context);
-        SQLiteDatabase database = opener.getWritableDatabase();
-        String[] columns = {ImageOpener.COL_NASA_DATE, ImageOpener.COL_NAME, ImageOpener.COL_TITLE, ImageOpener.COL_DOWNLOAD_DATE, ImageOpener.COL_FILE_NAME};
-        Cursor results = database.query(false, ImageOpener.TABLE, columns,
-                null, null, null, null, null, null);
+        SQLiteDatabase database = ImageDatabase.getInstance(context).getDatabase();
 
-        int imageDateColIndex = results.getColumnIndex(ImageOpener.COL_NASA_DATE);
-        int nameColIndex = results.getColumnIndex(ImageOpener.COL_NAME);
-        int titleColIndex = results.getColumnIndex(ImageOpener.COL_TITLE);
-        int downloadDateColIndex = results.getColumnIndex(ImageOpener.COL_DOWNLOAD_DATE);
-        int fileNameColIndex = results.getColumnIndex(ImageOpener.COL_FILE_NAME);
+        try (Cursor results = database.rawQuery(ImageDatabase.LOAD_IMAGES_SQL, null)) {
+            readImages(results, images);
+        }
 
-        while(results.moveToNext()) {
-            Date imageDate =  new Date(results.getString(imageDateColIndex));
-            String imageName = results.getString(nameColIndex);
-            String imageTitle = results.getString(titleColIndex);
-            Date imageDownloadDate = new Date(results.getString(downloadDateColIndex));
-            String imageFileName = results.getString(fileNameColIndex);
+        return images;
+    }
 
-            images.add(new Image(imageName, imageTitle, imageDownloadDate, imageDate, imageFileName));
+    /**
+     * Loads a single image from the database.
+     *
+     * @param nasaDate the NASA date of the image
+     * @param context the context the method is called from
+     * @return the Image, or null if no image is saved for that date
+     */
+    public Image loadImage(Date nasaDate, Context context) {
+        List<Image> images = new ArrayList<>(1);
+        SQLiteDatabase database = ImageDatabase.getInstance(context).getDatabase();
+
+        String[] args = {Integer.toString(nasaDate.toEpochDay())};
+        try (Cursor results = database.rawQuery(ImageDatabase.LOAD_IMAGE_SQL, args)) {
+            readImages(results, images);
         }
 
-        results.close();
-        database.close();
-        opener.close();
+        return images.isEmpty() ? null : images.get(0);
+    }
 
-        return images;
+    /**
+     * Loads one page of images from the database, in NASA date order.
+     * Pages are keyed on the NASA date, so each page costs the same no matter how deep the user scrolls.
+     *
+     * @param after the cursor returned with the previous page, or null to load the first page
+     * @param pageSize the maximum number of images on the page
+     * @param context the context the method is called from
+     * @return the page of images and the cursor to the next page
+     */
+    public ImagePage loadImagePage(Date after, int pageSize, Context context) {
+        List<Image> images = new ArrayList<>(pageSize + 1);
+        SQLiteDatabase database = ImageDatabase.getInstance(context).getDatabase();
+
+        // Every stored date comes after the day before the first Image of the Day, so it doubles as the first page's cursor
+        // One extra row is requested to find out if there is a next page
+        int afterDay = (after == null) ? Date.FIRST_EPOCH_DAY - 1 : after.toEpochDay();
+        String[] args = {Integer.toString(afterDay), Integer.toString(pageSize + 1)};
+        try (Cursor results = database.rawQuery(ImageDatabase.LOAD_IMAGE_PAGE_SQL, args)) {
+            readImages(results, images);
+        }
+
+        Date nextCursor = null;
+        if (images.size() > pageSize) {
+            images.remove(pageSize);
+            nextCursor = images.get(pageSize - 1).getNasaDate();
+        }
+        return new ImagePage(images, nextCursor);
     }
 
     /**
@@ -62,25 +99,144 @@ public class ImageDao {
      * @return true if the date matches an existing image
      */
     public boolean exists(Date date, Context context) {
-        ImageOpener opener = new ImageOpener(context);
-        SQLiteDatabase database = opener.getWritableDatabase();
-        String[] columns = {ImageOpener.COL_NASA_DATE};
-        Cursor results = database.query(false, ImageOpener.TABLE, columns,
-                null, null, null, null, null, null);
-        int imageDateColIndex = results.getColumnIndex(ImageOpener.COL_NASA_DATE);
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SavedDateIndex savedDates = imageDatabase.getSavedDates();
+        if (savedDates.isReady()) {
+            return savedDates.contains(date);
+        }
 
-        while(results.moveToNext()) {
-            Date imageDate =  new Date(results.getString(imageDateColIndex));
-            if(imageDate.equals(date)) {
-                return true;
+        // The index is still loading, so fall back to a primary key lookup
+        SQLiteStatement lookup = imageDatabase.getExistsStatement();
+        synchronized (lookup) {
+            lookup.clearBindings();
+            lookup.bindString(1, date.toString());
+            return lookup.simpleQueryForLong() > 0;
+        }
+    }
+
+    /**
+     * Returns the days of a range that have no saved image, e.g. to find which days of the archive to download.
+     *
+     * @param range the days to check; days outside June 16, 1995 to today are ignored
+     * @param context the parent context
+     * @return a new DateSet of the valid days in the range without a saved image
+     */
+    public DateSet findUnsavedDates(DateRange range, Context context) {
+        DateRange valid = range.intersectArchive();
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SavedDateIndex savedDates = imageDatabase.getSavedDates();
+        if (savedDates.isReady()) {
+            return savedDates.copy().missingIn(valid);
+        }
+
+        // The index is still loading, so read the saved days straight from the database
+        DateSet saved = new DateSet();
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        try (Cursor results = database.rawQuery(ImageDatabase.LOAD_DATES_SQL, null)) {
+            int imageDayColIndex = results.getColumnIndex(ImageOpener.COL_NASA_DAY);
+            while (results.moveToNext()) {
+                int day = results.getInt(imageDayColIndex);
+                if (day >= valid.getFirstEpochDay() && day <= valid.getLastEpochDay()) {
+                    saved.add(day);
+                }
+            }
+        }
+        return saved.missingIn(valid);
+    }
+
+    /**
+     * Finds saved images whose title, name or explanation contain every word of the query (as a prefix).
+     *
+     * @param query the text typed by the user
+     * @param limit the maximum number of results
+     * @param context the context the method is called from
+     * @return the matching images, best match first
+     */
+    public List<Image> searchImages(String query, int limit, Context context) {
+        List<Image> images = new ArrayList<>();
+        String match = ImageSearch.toMatchExpression(query);
+        if (match == null || limit <= 0) {
+            return images;
+        }
+        SQLiteDatabase database = ImageDatabase.getInstance(context).getDatabase();
+
+        // Score every match from the search table alone, keeping only the best few in a min-heap
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, (x, y) -> Double.compare(x[0], y[0]));
+        try (Cursor results = database.rawQuery(ImageDatabase.SEARCH_SQL, new String[]{match})) {
+            while (results.moveToNext()) {
+                double score = ImageSearch.score(results.getBlob(1));
+                if (best.size() < limit || score > best.peek()[0]) {
+                    best.add(new double[]{score, results.getInt(0)});
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
             }
         }
+        if (best.isEmpty()) {
+            return images;
+        }
 
-        results.close();
-        database.close();
-        opener.close();
+        // Then load just those rows, and put them back in score order
+        int[] days = new int[best.size()];
+        StringBuilder dayList = new StringBuilder();
+        for (int i = days.length - 1; i >= 0; i--) {
+            days[i] = (int) best.poll()[1];
+            dayList.append(i == days.length - 1 ? "" : ",").append(days[i]);
+        }
+        String sql = ImageDatabase.LOAD_IMAGES_SQL + " AND " + ImageOpener.COL_NASA_DAY + " IN (" + dayList + ")";
+        try (Cursor results = database.rawQuery(sql, null)) {
+            readImages(results, images);
+        }
+        Image[] ranked = new Image[days.length];
+        for (Image image : images) {
+            int day = image.getNasaDate().toEpochDay();
+            for (int i = 0; i < days.length; i++) {
+                if (days[i] == day) {
+                    ranked[i] = image;
+                    break;
+                }
+            }
+        }
+        images.clear();
+        for (Image image : ranked) {
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        return images;
+    }
 
-        return false;
+    /**
+     * Registers a listener that is told, on the main thread, about every image inserted, updated or deleted.
+     *
+     * @param listener the listener to notify
+     * @param context the context the method is called from
+     */
+    public void addChangeListener(ImageChangeListener listener, Context context) {
+        Handler mainThread = new Handler(Looper.getMainLooper());
+        addChangeListener(listener, mainThread::post, context);
+    }
+
+    /**
+     * Registers a listener that is told about every image inserted, updated or deleted.
+     *
+     * @param listener the listener to notify
+     * @param executor the executor the listener's methods are called on
+     * @param context the context the method is called from
+     */
+    public void addChangeListener(ImageChangeListener listener, Executor executor, Context context) {
+        ImageDatabase.getInstance(context).getChangeNotifier().addListener(listener, executor);
+    }
+
+    /**
+     * Unregisters a listener added with addChangeListener.
+     *
+     * @param listener the listener to stop notifying
+     * @param context the context the method is called from
+     */
+    public void removeChangeListener(ImageChangeListener listener, Context context) {
+        ImageDatabase.getInstance(context).getChangeNotifier().removeListener(listener);
     }
 
     /**
@@ -91,22 +247,40 @@ public class ImageDao {
      * @return true if the image was successfully saved to the database
      */
     public boolean saveImage(Image image, Context context) {
-        ImageOpener opener = new ImageOpener(context);
-        SQLiteDatabase database = opener.getWritableDatabase();
-
-        ContentValues newRow = new ContentValues();
-        newRow.put(ImageOpener.COL_NASA_DATE, image.getNasaDate().toString());
-        newRow.put(ImageOpener.COL_NAME, image.getName());
-        newRow.put(ImageOpener.COL_TITLE, image.getTitle());
-        newRow.put(ImageOpener.COL_DOWNLOAD_DATE, image.getDownloadDate().toString());
-        newRow.put(ImageOpener.COL_FILE_NAME, image.getFileName());
+        return saveImages(Collections.singletonList(image), context)[0];
+    }
 
-        long result = database.insert(ImageOpener.TABLE, null, newRow);
+    /**
+     * Saves several Image objects to the database in a single transaction.
+     *
+     * @param images the images to be saved
+     * @param context the context the method is called from
+     * @return for each image, in order, true if it was successfully saved to the database
+     */
+    public boolean[] saveImages(List<Image> images, Context context) {
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        boolean[] results = new boolean[images.size()];
 
-        database.close();
-        opener.close();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = insertRow(imageDatabase, images.get(i));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
-        return (result >= 0);
+        SavedDateIndex savedDates = imageDatabase.getSavedDates();
+        ImageChangeNotifier changeNotifier = imageDatabase.getChangeNotifier();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                savedDates.add(images.get(i).getNasaDate());
+                changeNotifier.fireInserted(images.get(i).getNasaDate());
+            }
+        }
+        return results;
     }
 
     /**
@@ -117,18 +291,144 @@ public class ImageDao {
      * @return true if the image is successfully deleted from the database
      */
     public boolean deleteImage(Image image, Context context) {
-        ImageOpener opener = new ImageOpener(context);
-        SQLiteDatabase database = opener.getWritableDatabase();
+        return deleteImages(Collections.singletonList(image), context)[0];
+    }
+
+    /**
+     * Deletes several images from the database in a single transaction.
+     * The rows are only tombstoned, so restoreImage can bring them back until purgeDeletedImages removes them.
+     *
+     * @param images the images to delete from the database
+     * @param context the context the method is called from
+     * @return for each image, in order, true if it was successfully deleted from the database
+     */
+    public boolean[] deleteImages(List<Image> images, Context context) {
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        boolean[] results = new boolean[images.size()];
+        long deletedAt = System.currentTimeMillis();
+
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = deleteRow(imageDatabase, images.get(i), deletedAt);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
-        String whereClause = ImageOpener.COL_NASA_DATE + "=?";
-        String[] whereArgs = {image.getNasaDate().toString()};
+        SavedDateIndex savedDates = imageDatabase.getSavedDates();
+        ImageChangeNotifier changeNotifier = imageDatabase.getChangeNotifier();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                savedDates.remove(images.get(i).getNasaDate());
+                changeNotifier.fireDeleted(images.get(i).getNasaDate());
+            }
+        }
+        return results;
+    }
 
-        int result = database.delete(ImageOpener.TABLE, whereClause, whereArgs);
+    /**
+     * Brings back a deleted image whose tombstone has not been purged yet.
+     *
+     * @param nasaDate the NASA date of the deleted image
+     * @param context the context the method is called from
+     * @return true if the image was restored
+     */
+    public boolean restoreImage(Date nasaDate, Context context) {
+        return restoreImages(Collections.singletonList(nasaDate), context)[0];
+    }
 
-        database.close();
-        opener.close();
+    /**
+     * Brings back several deleted images in a single transaction.
+     *
+     * @param nasaDates the NASA dates of the deleted images
+     * @param context the context the method is called from
+     * @return for each date, in order, true if its image was restored
+     */
+    public boolean[] restoreImages(List<Date> nasaDates, Context context) {
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        SQLiteStatement restore = imageDatabase.getRestoreStatement();
+        boolean[] results = new boolean[nasaDates.size()];
+
+        database.beginTransaction();
+        try {
+            synchronized (restore) {
+                for (int i = 0; i < results.length; i++) {
+                    restore.clearBindings();
+                    restore.bindString(1, nasaDates.get(i).toString());
+                    results[i] = restore.executeUpdateDelete() > 0;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
-        return (result > 0);
+        SavedDateIndex savedDates = imageDatabase.getSavedDates();
+        ImageChangeNotifier changeNotifier = imageDatabase.getChangeNotifier();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                savedDates.add(nasaDates.get(i));
+                changeNotifier.fireInserted(nasaDates.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Permanently removes images that were deleted at or before a given time, along with their files.
+     * The rows are removed in one transaction; a file is only deleted if no remaining row still uses it.
+     *
+     * @param deletedBefore the cut-off, in milliseconds since January 1, 1970
+     * @param context the context the method is called from
+     * @return the number of images purged
+     */
+    public int purgeDeletedImages(long deletedBefore, Context context) {
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        List<String> fileNames = new ArrayList<>();
+        int purged = 0;
+
+        database.beginTransaction();
+        try {
+            String[] args = {Long.toString(deletedBefore)};
+            try (Cursor results = database.rawQuery(ImageDatabase.LOAD_EXPIRED_SQL, args)) {
+                SQLiteStatement purge = imageDatabase.getPurgeStatement();
+                while (results.moveToNext()) {
+                    int day = results.getInt(0);
+                    synchronized (purge) {
+                        purge.clearBindings();
+                        purge.bindLong(1, day);
+                        purge.executeUpdateDelete();
+                    }
+                    deleteSearchEntry(imageDatabase, day);
+                    fileNames.add(results.getString(1));
+                    purged++;
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // The files go last, once the rows that used them are gone for good
+        SQLiteStatement fileInUse = imageDatabase.getFileInUseStatement();
+        for (String fileName : fileNames) {
+            boolean inUse;
+            synchronized (fileInUse) {
+                fileInUse.clearBindings();
+                fileInUse.bindString(1, fileName);
+                inUse = fileInUse.simpleQueryForLong() > 0;
+            }
+            if (!inUse) {
+                context.deleteFile(fileName);
+                ThumbnailStore.getInstance(context).remove(fileName);
+            }
+        }
+        return purged;
     }
 
     /**
@@ -140,24 +440,202 @@ public class ImageDao {
      * @return true if the image successfully updates
      */
     public boolean updateImage(Image image, String newName, Context context) {
-        ImageOpener opener = new ImageOpener(context);
-        SQLiteDatabase database = opener.getWritableDatabase();
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        boolean result;
+
+        database.beginTransaction();
+        try {
+            result = updateRow(imageDatabase, image, newName);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (result) {
+            imageDatabase.getChangeNotifier().fireUpdated(image.getNasaDate());
+        }
+        return result;
+    }
+
+    /**
+     * Updates several images in the database in a single transaction.
+     * Each image's user-given name (see Image.setName) is written as it is, like updateImage's newName, so a name
+     * cleared to "" stays cleared rather than becoming the title.
+     *
+     * @param images the image records to update
+     * @param context the context the method is called from
+     * @return for each image, in order, true if it successfully updates
+     */
+    public boolean[] updateImages(List<Image> images, Context context) {
+        ImageDatabase imageDatabase = ImageDatabase.getInstance(context);
+        SQLiteDatabase database = imageDatabase.getDatabase();
+        boolean[] results = new boolean[images.size()];
+
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < results.length; i++) {
+                Image image = images.get(i);
+                results[i] = updateRow(imageDatabase, image, image.getGivenName());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        ImageChangeNotifier changeNotifier = imageDatabase.getChangeNotifier();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                changeNotifier.fireUpdated(images.get(i).getNasaDate());
+            }
+        }
+        return results;
+    }
 
-        ContentValues row = new ContentValues();
-        row.put(ImageOpener.COL_NASA_DATE, image.getNasaDate().toString());
-        row.put(ImageOpener.COL_NAME, newName);
-        row.put(ImageOpener.COL_TITLE, image.getTitle());
-        row.put(ImageOpener.COL_DOWNLOAD_DATE, image.getDownloadDate().toString());
-        row.put(ImageOpener.COL_FILE_NAME, image.getFileName());
+    /**
+     * Inserts one image, and its search entry, with the compiled INSERT statements.
+     * Must be called inside a transaction.
+     *
+     * @param imageDatabase the shared database
+     * @param image the image to insert
+     * @return true if the row was inserted
+     */
+    private static boolean insertRow(ImageDatabase imageDatabase, Image image) {
+        // A tombstone left by an earlier delete of the same date is replaced by the new row
+        SQLiteStatement purgeDate = imageDatabase.getPurgeDateStatement();
+        synchronized (purgeDate) {
+            purgeDate.clearBindings();
+            purgeDate.bindString(1, image.getNasaDate().toString());
+            if (purgeDate.executeUpdateDelete() > 0) {
+                deleteSearchEntry(imageDatabase, image.getNasaDate().toEpochDay());
+            }
+        }
 
-        String whereClause = ImageOpener.COL_NASA_DATE + "=?;";
-        String[] whereArgs = {image.getNasaDate().toString()};
+        SQLiteStatement insert = imageDatabase.getInsertStatement();
+        synchronized (insert) {
+            insert.clearBindings();
+            insert.bindString(1, image.getNasaDate().toString());
+            ImageDatabase.bindStringOrNull(insert, 2, image.getName());
+            ImageDatabase.bindStringOrNull(insert, 3, image.getTitle());
+            insert.bindString(4, image.getDownloadDate().toString());
+            insert.bindString(5, image.getFileName());
+            insert.bindLong(6, image.getNasaDate().toEpochDay());
+            insert.bindLong(7, image.getDownloadDate().toEpochDay());
+            ImageDatabase.bindStringOrNull(insert, 8, image.getExplanation());
+            try {
+                insert.executeInsert();
+            } catch (SQLException e) {
+                // The insert fails if an image with the same date is already saved
+                return false;
+            }
+        }
 
-        int result = database.update(ImageOpener.TABLE, row, whereClause, whereArgs);
+        SQLiteStatement searchInsert = imageDatabase.getSearchInsertStatement();
+        synchronized (searchInsert) {
+            searchInsert.clearBindings();
+            searchInsert.bindLong(1, image.getNasaDate().toEpochDay());
+            ImageDatabase.bindStringOrNull(searchInsert, 2, image.getTitle());
+            ImageDatabase.bindStringOrNull(searchInsert, 3, image.getName());
+            ImageDatabase.bindStringOrNull(searchInsert, 4, image.getExplanation());
+            searchInsert.executeInsert();
+        }
+        return true;
+    }
 
-        database.close();
-        opener.close();
+    /**
+     * Tombstones one image with the compiled delete statement. Its search entry stays until the row is purged;
+     * searches skip tombstoned rows.
+     *
+     * @param imageDatabase the shared database
+     * @param image the image to delete
+     * @param deletedAt the time of the delete, in milliseconds since January 1, 1970
+     * @return true if a row was tombstoned
+     */
+    private static boolean deleteRow(ImageDatabase imageDatabase, Image image, long deletedAt) {
+        SQLiteStatement delete = imageDatabase.getDeleteStatement();
+        synchronized (delete) {
+            delete.clearBindings();
+            delete.bindLong(1, deletedAt);
+            delete.bindString(2, image.getNasaDate().toString());
+            return delete.executeUpdateDelete() > 0;
+        }
+    }
+
+    /**
+     * Removes an image's entry from the search table.
+     * Must be called inside a transaction.
+     *
+     * @param imageDatabase the shared database
+     * @param nasaDay the NASA epoch day of the image
+     */
+    private static void deleteSearchEntry(ImageDatabase imageDatabase, int nasaDay) {
+        SQLiteStatement searchDelete = imageDatabase.getSearchDeleteStatement();
+        synchronized (searchDelete) {
+            searchDelete.clearBindings();
+            searchDelete.bindLong(1, nasaDay);
+            searchDelete.executeUpdateDelete();
+        }
+    }
 
-        return (result > 0);
+    /**
+     * Updates one image, and its search entry, with the compiled UPDATE statements.
+     * Must be called inside a transaction.
+     *
+     * @param imageDatabase the shared database
+     * @param image the image to update
+     * @param newName the user-given name to store
+     * @return true if a row was updated
+     */
+    private static boolean updateRow(ImageDatabase imageDatabase, Image image, String newName) {
+        SQLiteStatement update = imageDatabase.getUpdateStatement();
+        synchronized (update) {
+            update.clearBindings();
+            ImageDatabase.bindStringOrNull(update, 1, newName);
+            ImageDatabase.bindStringOrNull(update, 2, image.getTitle());
+            update.bindString(3, image.getDownloadDate().toString());
+            update.bindString(4, image.getFileName());
+            update.bindLong(5, image.getDownloadDate().toEpochDay());
+            update.bindString(6, image.getNasaDate().toString());
+            if (update.executeUpdateDelete() == 0) {
+                return false;
+            }
+        }
+
+        SQLiteStatement searchUpdate = imageDatabase.getSearchUpdateStatement();
+        synchronized (searchUpdate) {
+            searchUpdate.clearBindings();
+            ImageDatabase.bindStringOrNull(searchUpdate, 1, image.getTitle());
+            ImageDatabase.bindStringOrNull(searchUpdate, 2, newName);
+            searchUpdate.bindLong(3, image.getNasaDate().toEpochDay());
+            searchUpdate.executeUpdateDelete();
+        }
+        return true;
+    }
+
+    /**
+     * Reads every row of a cursor (selected with the columns of LOAD_IMAGES_SQL) into Image objects.
+     *
+     * @param results the cursor to read
+     * @param images the list the images are added to
+     */
+    private static void readImages(Cursor results, List<Image> images) {
+        int imageDateColIndex = results.getColumnIndex(ImageOpener.COL_NASA_DAY);
+        int nameColIndex = results.getColumnIndex(ImageOpener.COL_NAME);
+        int titleColIndex = results.getColumnIndex(ImageOpener.COL_TITLE);
+        int downloadDateColIndex = results.getColumnIndex(ImageOpener.COL_DOWNLOAD_DAY);
+        int fileNameColIndex = results.getColumnIndex(ImageOpener.COL_FILE_NAME);
+        int explanationColIndex = results.getColumnIndex(ImageOpener.COL_EXPLANATION);
+
+        while(results.moveToNext()) {
+            // The dates are read from their integer day columns, so no text has to be parsed
+            Date imageDate = Date.ofEpochDay(results.getInt(imageDateColIndex));
+            String imageName = results.getString(nameColIndex);
+            String imageTitle = results.getString(titleColIndex);
+            Date imageDownloadDate = Date.ofEpochDay(results.getInt(downloadDateColIndex));
+            String imageFileName = results.getString(fileNameColIndex);
+            String imageExplanation = results.getString(explanationColIndex);
+
+            images.add(new Image(imageName, imageTitle, imageExplanation, imageDownloadDate, imageDate, imageFileName));
+        }
     }
 }
@@ -0,0 +1,343 @@
+package com.example.nasapicoftheday.dao;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * The ImageDatabase class owns the single, application-scoped connection to the image database.
+ * All ImageDao calls share this connection and its compiled statements instead of opening and
+ * closing the database on every call.
+ *
+ * @author Caitlin Ross
+ */
+public class ImageDatabase {
+    /** The shared instance, created the first time the database is needed */
+    private static ImageDatabase instance;
+
+    /** The helper that creates/upgrades the database */
+    private final ImageOpener opener;
+    /** The open database connection */
+    private final SQLiteDatabase database;
+
+    /** SQL used to load every image that has not been deleted (compiled once and kept in the connection's statement cache) */
+    static final String LOAD_IMAGES_SQL = "SELECT " +
+            ImageOpener.COL_NASA_DAY + ", " +
+            ImageOpener.COL_NAME + ", " +
+            ImageOpener.COL_TITLE + ", " +
+            ImageOpener.COL_DOWNLOAD_DAY + ", " +
+            ImageOpener.COL_FILE_NAME + ", " +
+            ImageOpener.COL_EXPLANATION +
+            " FROM " + ImageOpener.TABLE +
+            " WHERE " + ImageOpener.COL_DELETED_AT + " IS NULL";
+    /** SQL used to load a single image (NASA epoch day) */
+    static final String LOAD_IMAGE_SQL = LOAD_IMAGES_SQL +
+            " AND " + ImageOpener.COL_NASA_DAY + "=?";
+    /** SQL used to load the page of images after a NASA date (cursor date, page size) */
+    static final String LOAD_IMAGE_PAGE_SQL = LOAD_IMAGES_SQL +
+            " AND " + ImageOpener.COL_NASA_DAY + ">?" +
+            " ORDER BY " + ImageOpener.COL_NASA_DAY +
+            " LIMIT ?";
+    /** SQL used to find and score full-text matches (MATCH expression) */
+    static final String SEARCH_SQL = "SELECT " + ImageOpener.SEARCH_TABLE + ".docid," +
+            " matchinfo(" + ImageOpener.SEARCH_TABLE + ", 'pcx')" +
+            " FROM " + ImageOpener.SEARCH_TABLE +
+            " JOIN " + ImageOpener.TABLE + " ON " + ImageOpener.TABLE + "." + ImageOpener.COL_NASA_DAY + "=" +
+            ImageOpener.SEARCH_TABLE + ".docid" +
+            " WHERE " + ImageOpener.SEARCH_TABLE + " MATCH ?" +
+            " AND " + ImageOpener.TABLE + "." + ImageOpener.COL_DELETED_AT + " IS NULL";
+    /** SQL used to list the dates (as epoch days) of every saved image that has not been deleted */
+    static final String LOAD_DATES_SQL = "SELECT " + ImageOpener.COL_NASA_DAY +
+            " FROM " + ImageOpener.TABLE +
+            " WHERE " + ImageOpener.COL_DELETED_AT + " IS NULL";
+    /** SQL used to list the deleted images whose tombstones have expired (deleted at or before a time in millis) */
+    static final String LOAD_EXPIRED_SQL = "SELECT " + ImageOpener.COL_NASA_DAY + ", " + ImageOpener.COL_FILE_NAME +
+            " FROM " + ImageOpener.TABLE +
+            " WHERE " + ImageOpener.COL_DELETED_AT + "<=?";
+
+    /** Compiled statements for the write operations */
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement updateStatement;
+    private final SQLiteStatement deleteStatement;
+    private final SQLiteStatement restoreStatement;
+    /** Compiled statements that remove tombstoned rows for good */
+    private final SQLiteStatement purgeStatement;
+    private final SQLiteStatement purgeDateStatement;
+    /** Compiled lookup of how many images still use a file */
+    private final SQLiteStatement fileInUseStatement;
+    /** Compiled statements that keep the full-text search table in step with the image table */
+    private final SQLiteStatement searchInsertStatement;
+    private final SQLiteStatement searchUpdateStatement;
+    private final SQLiteStatement searchDeleteStatement;
+    /** Compiled primary key lookup, used until the saved date index has loaded */
+    private final SQLiteStatement existsStatement;
+
+    /** In-memory bitmap of the dates that have a saved image */
+    private final SavedDateIndex savedDates = new SavedDateIndex();
+    /** Delivers change events to the listeners registered through ImageDao */
+    private final ImageChangeNotifier changeNotifier = new ImageChangeNotifier();
+
+    /**
+     * Constructor, opens the database with write-ahead logging and compiles the statements.
+     *
+     * @param context the application context
+     */
+    private ImageDatabase(Context context) {
+        opener = new ImageOpener(context);
+        opener.setWriteAheadLoggingEnabled(true);
+        database = opener.getWritableDatabase();
+
+        insertStatement = database.compileStatement("INSERT INTO " + ImageOpener.TABLE + " (" +
+                ImageOpener.COL_NASA_DATE + ", " +
+                ImageOpener.COL_NAME + ", " +
+                ImageOpener.COL_TITLE + ", " +
+                ImageOpener.COL_DOWNLOAD_DATE + ", " +
+                ImageOpener.COL_FILE_NAME + ", " +
+                ImageOpener.COL_NASA_DAY + ", " +
+                ImageOpener.COL_DOWNLOAD_DAY + ", " +
+                ImageOpener.COL_EXPLANATION + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        updateStatement = database.compileStatement("UPDATE " + ImageOpener.TABLE + " SET " +
+                ImageOpener.COL_NAME + "=?, " +
+                ImageOpener.COL_TITLE + "=?, " +
+                ImageOpener.COL_DOWNLOAD_DATE + "=?, " +
+                ImageOpener.COL_FILE_NAME + "=?, " +
+                ImageOpener.COL_DOWNLOAD_DAY + "=? WHERE " +
+                ImageOpener.COL_NASA_DATE + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NULL");
+        deleteStatement = database.compileStatement("UPDATE " + ImageOpener.TABLE + " SET " +
+                ImageOpener.COL_DELETED_AT + "=? WHERE " +
+                ImageOpener.COL_NASA_DATE + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NULL");
+        restoreStatement = database.compileStatement("UPDATE " + ImageOpener.TABLE + " SET " +
+                ImageOpener.COL_DELETED_AT + "=NULL WHERE " +
+                ImageOpener.COL_NASA_DATE + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NOT NULL");
+        purgeStatement = database.compileStatement("DELETE FROM " + ImageOpener.TABLE +
+                " WHERE " + ImageOpener.COL_NASA_DAY + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NOT NULL");
+        purgeDateStatement = database.compileStatement("DELETE FROM " + ImageOpener.TABLE +
+                " WHERE " + ImageOpener.COL_NASA_DATE + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NOT NULL");
+        fileInUseStatement = database.compileStatement("SELECT COUNT(*) FROM " + ImageOpener.TABLE +
+                " WHERE " + ImageOpener.COL_FILE_NAME + "=?");
+        searchInsertStatement = database.compileStatement("INSERT INTO " + ImageOpener.SEARCH_TABLE + " (docid, " +
+                ImageOpener.COL_TITLE + ", " +
+                ImageOpener.COL_NAME + ", " +
+                ImageOpener.COL_EXPLANATION + ") VALUES (?, ?, ?, ?)");
+        searchUpdateStatement = database.compileStatement("UPDATE " + ImageOpener.SEARCH_TABLE + " SET " +
+                ImageOpener.COL_TITLE + "=?, " +
+                ImageOpener.COL_NAME + "=? WHERE docid=?");
+        searchDeleteStatement = database.compileStatement("DELETE FROM " + ImageOpener.SEARCH_TABLE +
+                " WHERE docid=?");
+        existsStatement = database.compileStatement("SELECT COUNT(*) FROM " + ImageOpener.TABLE +
+                " WHERE " + ImageOpener.COL_NASA_DATE + "=? AND " +
+                ImageOpener.COL_DELETED_AT + " IS NULL");
+
+        // Build the saved date index in the background so opening the database stays cheap
+        Thread indexLoader = new Thread(() -> savedDates.load(database), "SavedDateIndex");
+        indexLoader.setDaemon(true);
+        indexLoader.start();
+    }
+
+    /**
+     * Returns the shared database, opening it if necessary. Opening creates or upgrades the schema, which can be
+     * slow, so the application opens it on a background thread as it starts; a caller that arrives while that is
+     * still running waits for it rather than opening a second connection.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared ImageDatabase
+     */
+    public static synchronized ImageDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared database and releases its compiled statements.
+     * The next call to getInstance will re-open it.
+     * On a device the connection is normally never closed: it lives as long as the process, and the system kills
+     * the process without warning. That is safe, since every write is committed in its own transaction and the
+     * write-ahead log is recovered on the next open. This is only called from Application.onTerminate, which
+     * runs in emulated processes, not on devices.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Returns the open database connection.
+     *
+     * @return the database connection
+     */
+    SQLiteDatabase getDatabase() {
+        return database;
+    }
+
+    /**
+     * Returns the compiled INSERT statement
+     * (NASA date, name, title, download date, file name, NASA epoch day, download epoch day, explanation).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the insert statement
+     */
+    SQLiteStatement getInsertStatement() {
+        return insertStatement;
+    }
+
+    /**
+     * Returns the compiled UPDATE statement (name, title, download date, file name, download epoch day, NASA date).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the update statement
+     */
+    SQLiteStatement getUpdateStatement() {
+        return updateStatement;
+    }
+
+    /**
+     * Returns the compiled statement that tombstones an image (deleted-at time in millis, NASA date).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the delete statement
+     */
+    SQLiteStatement getDeleteStatement() {
+        return deleteStatement;
+    }
+
+    /**
+     * Returns the compiled statement that clears an image's tombstone (NASA date).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the restore statement
+     */
+    SQLiteStatement getRestoreStatement() {
+        return restoreStatement;
+    }
+
+    /**
+     * Returns the compiled statement that removes a tombstoned row (NASA epoch day).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the purge statement
+     */
+    SQLiteStatement getPurgeStatement() {
+        return purgeStatement;
+    }
+
+    /**
+     * Returns the compiled statement that removes a tombstoned row (NASA date), so the date can be saved again.
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the purge statement
+     */
+    SQLiteStatement getPurgeDateStatement() {
+        return purgeDateStatement;
+    }
+
+    /**
+     * Returns the compiled count of rows, deleted or not, that use a file (file name).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the file in use statement
+     */
+    SQLiteStatement getFileInUseStatement() {
+        return fileInUseStatement;
+    }
+
+    /**
+     * Returns the compiled search table INSERT statement (NASA epoch day, title, name, explanation).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the search insert statement
+     */
+    SQLiteStatement getSearchInsertStatement() {
+        return searchInsertStatement;
+    }
+
+    /**
+     * Returns the compiled search table UPDATE statement (title, name, NASA epoch day).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the search update statement
+     */
+    SQLiteStatement getSearchUpdateStatement() {
+        return searchUpdateStatement;
+    }
+
+    /**
+     * Returns the compiled search table DELETE statement (NASA epoch day).
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the search delete statement
+     */
+    SQLiteStatement getSearchDeleteStatement() {
+        return searchDeleteStatement;
+    }
+
+    /**
+     * Returns the compiled primary key lookup (NASA date), which returns 1 if the date is saved.
+     * Callers must synchronize on the statement while binding and executing it.
+     *
+     * @return the exists statement
+     */
+    SQLiteStatement getExistsStatement() {
+        return existsStatement;
+    }
+
+    /**
+     * Returns the in-memory index of saved dates.
+     *
+     * @return the saved date index
+     */
+    SavedDateIndex getSavedDates() {
+        return savedDates;
+    }
+
+    /**
+     * Returns the notifier for insert/update/delete events.
+     *
+     * @return the change notifier
+     */
+    ImageChangeNotifier getChangeNotifier() {
+        return changeNotifier;
+    }
+
+    /**
+     * Binds a String to a statement, binding NULL instead if the value is null.
+     *
+     * @param statement the statement to bind to
+     * @param index the 1-based index of the parameter
+     * @param value the value to bind
+     */
+    static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Closes the compiled statements, the connection and the helper.
+     */
+    private void close() {
+        insertStatement.close();
+        updateStatement.close();
+        deleteStatement.close();
+        restoreStatement.close();
+        purgeStatement.close();
+        purgeDateStatement.close();
+        fileInUseStatement.close();
+        searchInsertStatement.close();
+        searchUpdateStatement.close();
+        searchDeleteStatement.close();
+        existsStatement.close();
+        database.close();
+        opener.close();
+    }
+}
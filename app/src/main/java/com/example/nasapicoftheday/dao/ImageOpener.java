@@ -13,13 +13,53 @@ public class ImageOpener extends SQLiteOpenHelper {
 
     /** Several static constants that hold database identifiers (database name, table name, column names, etc). */
     private final static String DATABASE_NAME = "ImageDB";
-    private final static int VERSION_NUM = 1;
+    private final static int VERSION_NUM = 4;
     public final static String TABLE = "SAVED_IMAGES";
     public final static String COL_NASA_DATE = "NASA_DATE";
     public final static String COL_FILE_NAME = "FILE_PATH";
     public final static String COL_NAME = "GIVEN_NAME";
     public final static String COL_TITLE = "PHOTO_TITLE";
     public final static String COL_DOWNLOAD_DATE = "DOWNLOAD_DATE";
+    public final static String COL_NASA_DAY = "NASA_DAY";
+    public final static String COL_DOWNLOAD_DAY = "DOWNLOAD_DAY";
+    public final static String COL_EXPLANATION = "EXPLANATION";
+    public final static String COL_DELETED_AT = "DELETED_AT";
+    public final static String SEARCH_TABLE = "SAVED_IMAGES_FTS";
+    public final static String INDEX_NASA_DAY = "SAVED_IMAGES_NASA_DAY";
+    public final static String INDEX_DOWNLOAD_DAY = "SAVED_IMAGES_DOWNLOAD_DAY";
+
+    /** The Julian day number of January 1, 1970, used to convert SQLite dates to epoch days */
+    private final static String UNIX_EPOCH_JULIAN_DAY = "2440587.5";
+
+    /**
+     * The schema migrations, in order. MIGRATIONS[i] upgrades the database from version (i + 1) to (i + 2),
+     * so the length of this array must always be VERSION_NUM - 1.
+     */
+    private final static Migration[] MIGRATIONS = {
+            // Version 2: integer epoch-day copies of both dates, indexed for range scans and sorting
+            db -> {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_NASA_DAY + " integer");
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_DOWNLOAD_DAY + " integer");
+                db.execSQL("UPDATE " + TABLE + " SET " +
+                        COL_NASA_DAY + "=" + epochDayOf(COL_NASA_DATE) + ", " +
+                        COL_DOWNLOAD_DAY + "=" + epochDayOf(COL_DOWNLOAD_DATE));
+                db.execSQL("CREATE UNIQUE INDEX " + INDEX_NASA_DAY + " ON " + TABLE + " (" + COL_NASA_DAY + ")");
+                db.execSQL("CREATE INDEX " + INDEX_DOWNLOAD_DAY + " ON " + TABLE + " (" + COL_DOWNLOAD_DAY + ")");
+            },
+            // Version 3: NASA's explanation text and a full-text index over title, name and explanation
+            // The search table's docid is the image's NASA_DAY
+            db -> {
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_EXPLANATION + " text");
+                db.execSQL("CREATE VIRTUAL TABLE " + SEARCH_TABLE + " USING fts4(" +
+                        COL_TITLE + ", " + COL_NAME + ", " + COL_EXPLANATION + ")");
+                db.execSQL("INSERT INTO " + SEARCH_TABLE + " (docid, " +
+                        COL_TITLE + ", " + COL_NAME + ", " + COL_EXPLANATION + ") SELECT " +
+                        COL_NASA_DAY + ", " + COL_TITLE + ", " + COL_NAME + ", " + COL_EXPLANATION +
+                        " FROM " + TABLE);
+            },
+            // Version 4: tombstones; a deleted image keeps its row (and file) with the time it was deleted until purged
+            db -> db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COL_DELETED_AT + " integer")
+    };
 
     /**
      * Constructor.
@@ -31,7 +71,7 @@ public class ImageOpener extends SQLiteOpenHelper {
     }
 
     /**
-     * Creates the table when the database is first created.
+     * Creates the table when the database is first created, then brings it up to the current version.
      *
      * @param db A reference to the SQLite database
      */
@@ -43,10 +83,11 @@ public class ImageOpener extends SQLiteOpenHelper {
                 COL_NAME + " text, " +
                 COL_TITLE + " text, " +
                 COL_DOWNLOAD_DATE + " text)");
+        migrate(db, 1, VERSION_NUM);
     }
 
     /**
-     * Drops the table when SQLite is updated, then calls onCreate to recreate the table.
+     * Upgrades the database one version at a time, keeping the existing data.
      *
      * @param db A reference to the SQLite database
      * @param oldVersion The old SQLite version
@@ -54,7 +95,42 @@ public class ImageOpener extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-        onCreate(db);
+        migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Runs every migration between two versions, in order.
+     * SQLiteOpenHelper already wraps onCreate/onUpgrade in a transaction, so a failed step rolls back the whole upgrade.
+     *
+     * @param db A reference to the SQLite database
+     * @param fromVersion the version the database is currently at
+     * @param toVersion the version to upgrade to
+     */
+    private static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion; version < toVersion; version++) {
+            MIGRATIONS[version - 1].migrate(db);
+        }
+    }
+
+    /**
+     * Returns an SQL expression that converts a YYYY-MM-DD text column into a count of days since January 1, 1970.
+     *
+     * @param column the name of the text date column
+     * @return the SQL expression
+     */
+    private static String epochDayOf(String column) {
+        return "CAST(julianday(" + column + ") - " + UNIX_EPOCH_JULIAN_DAY + " AS INTEGER)";
+    }
+
+    /**
+     * A single step in the schema's history, upgrading the database by one version.
+     */
+    private interface Migration {
+        /**
+         * Applies this step to the database.
+         *
+         * @param db A reference to the SQLite database
+         */
+        void migrate(SQLiteDatabase db);
     }
 }
@@ -0,0 +1,51 @@
+package com.example.nasapicoftheday.dao;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ImagePage class holds one page of saved images, ordered by NASA date, and the cursor to the next page.
+ *
+ * @author Caitlin Ross
+ */
+public class ImagePage {
+    /** The images on this page, in NASA date order */
+    private final List<Image> images;
+    /** The NASA date of the last image on this page, or null if this is the last page */
+    private final Date nextCursor;
+
+    /**
+     * Constructor.
+     *
+     * @param images the images on this page
+     * @param nextCursor the cursor to pass to load the next page, or null if there are no more pages
+     */
+    ImagePage(List<Image> images, Date nextCursor) {
+        this.images = Collections.unmodifiableList(images);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the images on this page.
+     *
+     * @return an unmodifiable List of Image objects
+     */
+    public List<Image> getImages() { return images; }
+
+    /**
+     * Returns the cursor used to request the page after this one.
+     *
+     * @return the NASA date to load after, or null if this is the last page
+     */
+    public Date getNextCursor() { return nextCursor; }
+
+    /**
+     * Returns true if there are more images after this page.
+     *
+     * @return true if another page can be loaded
+     */
+    public boolean hasNext() { return nextCursor != null; }
+}
@@ -0,0 +1,315 @@
+package com.example.nasapicoftheday.dao;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The ImageRepository class keeps the metadata of every saved image in memory, sorted by NASA date, so activities
+ * can look images up and render the saved list without going to the database.
+ * The snapshot is loaded once on a background thread and then patched from ImageDao's change events.
+ *
+ * @author Caitlin Ross
+ */
+public class ImageRepository implements ImageChangeListener {
+    /** Number of images read from the database at a time while loading */
+    private static final int LOAD_PAGE_SIZE = 500;
+    /** Number of times the snapshot load is tried before giving up with an empty snapshot */
+    private static final int LOAD_ATTEMPTS = 3;
+    /** Wait before retrying a failed load, multiplied by the attempt number, in milliseconds */
+    private static final long LOAD_RETRY_MILLIS = 500;
+
+    /** The shared instance, created when the application starts */
+    private static ImageRepository instance;
+
+    /** The application context */
+    private final Context context;
+    /** The DAO used to load the snapshot and re-read changed rows */
+    private final ImageDao dao = new ImageDao();
+    /** Used to run the loaded callbacks on the main thread */
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+
+    /** The current snapshot, or null until the first load finishes (replaced, never modified) */
+    private volatile Snapshot snapshot;
+    /** Dates changed while the snapshot was loading, re-read once it has loaded (guarded by this) */
+    private final Set<Date> changedWhileLoading = new HashSet<>();
+    /** Callbacks waiting for the snapshot to load (guarded by this) */
+    private final List<Runnable> loadedCallbacks = new ArrayList<>();
+
+    /**
+     * Constructor, starts listening for changes and starts loading the snapshot in the background.
+     *
+     * @param context the application context
+     */
+    private ImageRepository(Context context) {
+        this.context = context;
+        // Changes are applied on the writing thread, before the main thread hears about them
+        dao.addChangeListener(this, Runnable::run, context);
+        Thread loader = new Thread(this::load, "ImageRepository");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Returns the shared repository, creating it (and starting its load) if necessary.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared ImageRepository
+     */
+    public static synchronized ImageRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns true once the snapshot has loaded.
+     *
+     * @return true if the repository can serve lookups from memory
+     */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Runs a callback on the main thread once the snapshot has loaded (straight away if it already has).
+     *
+     * @param callback the callback to run
+     */
+    public void whenLoaded(Runnable callback) {
+        synchronized (this) {
+            if (snapshot == null) {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+        mainThread.post(callback);
+    }
+
+    /**
+     * Returns every saved image, in NASA date order. The Image objects are shared and must not be modified.
+     *
+     * @return an unmodifiable List of Image objects, empty until the snapshot has loaded
+     */
+    public List<Image> getImages() {
+        Snapshot current = snapshot;
+        return (current == null) ? Collections.emptyList() : current.list;
+    }
+
+    /**
+     * Returns the saved image for a NASA date. The Image object is shared and must not be modified.
+     *
+     * @param nasaDate the NASA date to look up
+     * @return the Image, or null if none is saved for that date (or the snapshot has not loaded)
+     */
+    public Image getImage(Date nasaDate) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        int position = current.indexOf(nasaDate.toEpochDay());
+        return (position >= 0) ? current.images[position] : null;
+    }
+
+    /**
+     * Returns the position of a saved image in getImages().
+     *
+     * @param nasaDate the NASA date to look up
+     * @return the image's position, or a negative number if it is not saved
+     */
+    public int indexOf(Date nasaDate) {
+        Snapshot current = snapshot;
+        return (current == null) ? -1 : current.indexOf(nasaDate.toEpochDay());
+    }
+
+    /**
+     * Returns true if an image is saved for the given date.
+     *
+     * @param nasaDate the date to check
+     * @return true if the date matches a saved image
+     */
+    public boolean exists(Date nasaDate) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Not loaded yet; the DAO answers from its saved date index
+            return dao.exists(nasaDate, context);
+        }
+        return current.indexOf(nasaDate.toEpochDay()) >= 0;
+    }
+
+    /**
+     * Patches the snapshot with a newly saved image.
+     *
+     * @param nasaDate the NASA date of the saved image
+     */
+    @Override
+    public void onImageInserted(Date nasaDate) {
+        refresh(nasaDate);
+    }
+
+    /**
+     * Patches the snapshot with a changed image.
+     *
+     * @param nasaDate the NASA date of the changed image
+     */
+    @Override
+    public void onImageUpdated(Date nasaDate) {
+        refresh(nasaDate);
+    }
+
+    /**
+     * Removes a deleted image from the snapshot.
+     *
+     * @param nasaDate the NASA date of the deleted image
+     */
+    @Override
+    public void onImageDeleted(Date nasaDate) {
+        refresh(nasaDate);
+    }
+
+    /**
+     * Re-reads one image and swaps in a snapshot with that image added, replaced or removed.
+     *
+     * @param nasaDate the NASA date of the image
+     */
+    private void refresh(Date nasaDate) {
+        synchronized (this) {
+            if (snapshot == null) {
+                changedWhileLoading.add(nasaDate);
+                return;
+            }
+            // Read under the lock: events can arrive on more than one thread, and a row read before another
+            // thread's newer read must not be installed after it
+            snapshot = snapshot.with(nasaDate.toEpochDay(), dao.loadImage(nasaDate, context));
+        }
+    }
+
+    /**
+     * Loads the snapshot, then applies the changes made meanwhile and runs the loaded callbacks. A load that keeps
+     * failing publishes an empty snapshot, so the callbacks still run and the change events still patch it.
+     */
+    private void load() {
+        List<Image> images = null;
+        for (int attempt = 1; images == null && attempt <= LOAD_ATTEMPTS; attempt++) {
+            try {
+                images = loadPages();
+            } catch (RuntimeException e) {
+                // e.g. an SQLiteException while the database is busy or being upgraded
+                e.printStackTrace();
+                if (attempt < LOAD_ATTEMPTS) {
+                    SystemClock.sleep(LOAD_RETRY_MILLIS * attempt);
+                }
+            }
+        }
+
+        Snapshot loaded = new Snapshot((images == null) ? new Image[0] : images.toArray(new Image[0]));
+        List<Runnable> callbacks;
+        synchronized (this) {
+            // Re-read whatever was written while the pages were being read
+            for (Date changed : changedWhileLoading) {
+                try {
+                    loaded = loaded.with(changed.toEpochDay(), dao.loadImage(changed, context));
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            changedWhileLoading.clear();
+            snapshot = loaded;
+            callbacks = new ArrayList<>(loadedCallbacks);
+            loadedCallbacks.clear();
+        }
+        for (Runnable callback : callbacks) {
+            mainThread.post(callback);
+        }
+    }
+
+    /**
+     * Reads every saved image from the database a page at a time.
+     *
+     * @return the images, in NASA date order
+     */
+    private List<Image> loadPages() {
+        List<Image> images = new ArrayList<>();
+        Date cursor = null;
+        do {
+            ImagePage page = dao.loadImagePage(cursor, LOAD_PAGE_SIZE, context);
+            images.addAll(page.getImages());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return images;
+    }
+
+    /**
+     * An immutable, date-sorted array of images with a parallel array of their NASA epoch days for binary search.
+     */
+    private static class Snapshot {
+        private final Image[] images;
+        private final int[] days;
+        private final List<Image> list;
+
+        /**
+         * Constructor.
+         *
+         * @param images the images, sorted by NASA date
+         */
+        Snapshot(Image[] images) {
+            this.images = images;
+            this.days = new int[images.length];
+            for (int i = 0; i < images.length; i++) {
+                days[i] = images[i].getNasaDate().toEpochDay();
+            }
+            this.list = Collections.unmodifiableList(Arrays.asList(images));
+        }
+
+        /**
+         * Finds an image by NASA epoch day.
+         *
+         * @param day the NASA epoch day
+         * @return the image's position, or (-(insertion point) - 1) if it is not in the snapshot
+         */
+        int indexOf(int day) {
+            return Arrays.binarySearch(days, day);
+        }
+
+        /**
+         * Returns a copy of this snapshot with one image added, replaced or removed.
+         *
+         * @param day the NASA epoch day of the image
+         * @param image the image, or null to remove the day
+         * @return the new snapshot
+         */
+        Snapshot with(int day, Image image) {
+            int position = indexOf(day);
+            Image[] updated;
+            if (position >= 0 && image != null) {
+                updated = images.clone();
+                updated[position] = image;
+            } else if (position >= 0) {
+                updated = new Image[images.length - 1];
+                System.arraycopy(images, 0, updated, 0, position);
+                System.arraycopy(images, position + 1, updated, position, images.length - position - 1);
+            } else if (image != null) {
+                int insertAt = -(position + 1);
+                updated = new Image[images.length + 1];
+                System.arraycopy(images, 0, updated, 0, insertAt);
+                updated[insertAt] = image;
+                System.arraycopy(images, insertAt, updated, insertAt + 1, images.length - insertAt);
+            } else {
+                return this;
+            }
+            return new Snapshot(updated);
+        }
+    }
+}
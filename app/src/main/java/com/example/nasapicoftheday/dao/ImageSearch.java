@@ -0,0 +1,69 @@
+package com.example.nasapicoftheday.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * The ImageSearch class turns what the user typed into a full-text query and ranks the matches.
+ *
+ * @author Caitlin Ross
+ */
+class ImageSearch {
+    /** Column weights, in the order the columns are declared in the search table (title, name, explanation) */
+    private static final double[] COLUMN_WEIGHTS = {3.0, 2.0, 1.0};
+
+    /**
+     * Converts free text into an FTS MATCH expression where every word must match as a prefix.
+     * Anything other than letters and digits is dropped, so the user cannot write FTS syntax by accident.
+     *
+     * @param text the text typed by the user
+     * @return the MATCH expression, or null if the text has no searchable words
+     */
+    static String toMatchExpression(String text) {
+        StringBuilder match = new StringBuilder(text.length() + 8);
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord && match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(Character.toLowerCase(c));
+                inWord = true;
+            } else if (inWord) {
+                match.append('*');
+                inWord = false;
+            }
+        }
+        if (inWord) {
+            match.append('*');
+        }
+        return (match.length() == 0) ? null : match.toString();
+    }
+
+    /**
+     * Scores one match from the value of matchinfo(table, 'pcx').
+     * Each hit counts in proportion to how rare the word is across all rows, weighted by the column it is in.
+     *
+     * @param matchInfo the matchinfo blob for the row
+     * @return the row's score; higher is a better match
+     */
+    static double score(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        double score = 0.0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                int base = 2 + 3 * (phrase * columns + column);
+                int hitsThisRow = info.get(base);
+                int hitsAllRows = info.get(base + 1);
+                if (hitsThisRow > 0) {
+                    score += COLUMN_WEIGHTS[column] * ((double) hitsThisRow / hitsAllRows);
+                }
+            }
+        }
+        return score;
+    }
+}
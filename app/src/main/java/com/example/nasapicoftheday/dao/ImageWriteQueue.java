@@ -0,0 +1,320 @@
+package com.example.nasapicoftheday.dao;
+
+import android.content.Context;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ImageWriteQueue class runs ImageDao writes on a single background thread so the UI never waits on the database.
+ * Writes run in the order they are queued. A write to a NASA date that already has a write waiting is merged into it
+ * where that gives the same result (e.g. two renames keep only the last name).
+ *
+ * @author Caitlin Ross
+ */
+public class ImageWriteQueue {
+    /** How long shutdown waits for queued writes to finish */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /** The shared instance, created the first time a write is queued */
+    private static ImageWriteQueue instance;
+
+    /** The application context the writes are run with */
+    private final Context context;
+    /** The DAO that performs the writes */
+    private final ImageDao dao = new ImageDao();
+    /** The single writer thread */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "ImageWriteQueue"));
+
+    /** Writes waiting to run, oldest first (guarded by this) */
+    private final ArrayDeque<Write> pending = new ArrayDeque<>();
+    /** The newest waiting write for each NASA epoch day, which later writes to that day may merge into (guarded by this) */
+    private final Map<Integer, Write> lastPendingByDay = new HashMap<>();
+    /** True if a drain of the pending writes has been handed to the writer thread (guarded by this) */
+    private boolean drainScheduled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param context the application context
+     */
+    private ImageWriteQueue(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the shared write queue, creating it if necessary.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared ImageWriteQueue
+     */
+    public static synchronized ImageWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageWriteQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared write queue, waiting briefly for the writes already queued to finish.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.writer.shutdown();
+            try {
+                instance.writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            instance = null;
+        }
+    }
+
+    /**
+     * Queues ImageDao.saveImage.
+     *
+     * @param image the image to be saved
+     * @return a Future that completes with true if the image was saved
+     */
+    public Future<Boolean> saveImage(Image image) {
+        return enqueue(new Write(Kind.SAVE, image.getNasaDate(), image, null));
+    }
+
+    /**
+     * Queues ImageDao.updateImage.
+     *
+     * @param image the image record to update
+     * @param newName the new name
+     * @return a Future that completes with true if the image was updated
+     */
+    public Future<Boolean> updateImage(Image image, String newName) {
+        return enqueue(new Write(Kind.UPDATE, image.getNasaDate(), image, newName));
+    }
+
+    /**
+     * Queues ImageDao.deleteImage.
+     *
+     * @param image the image to delete
+     * @return a Future that completes with true if the image was deleted
+     */
+    public Future<Boolean> deleteImage(Image image) {
+        return enqueue(new Write(Kind.DELETE, image.getNasaDate(), image, null));
+    }
+
+    /**
+     * Queues ImageDao.restoreImage.
+     *
+     * @param nasaDate the NASA date of the deleted image
+     * @return a Future that completes with true if the image was restored
+     */
+    public Future<Boolean> restoreImage(Date nasaDate) {
+        return enqueue(new Write(Kind.RESTORE, nasaDate, null, null));
+    }
+
+    /**
+     * Queues ImageDao.purgeDeletedImages, after every write already queued.
+     *
+     * @param deletedBefore the cut-off, in milliseconds since January 1, 1970
+     * @return a Future that completes with the number of images purged
+     */
+    public Future<Integer> purgeDeletedImages(long deletedBefore) {
+        FutureTask<Integer> purge = new FutureTask<>(() -> dao.purgeDeletedImages(deletedBefore, context));
+        writer.execute(purge);
+        return purge;
+    }
+
+    /**
+     * Adds a write to the queue, merging it into the waiting write for the same date when possible.
+     *
+     * @param write the write to add
+     * @return the Future of the write that will carry out this request
+     */
+    private synchronized Future<Boolean> enqueue(Write write) {
+        int day = write.nasaDate.toEpochDay();
+        Write last = lastPendingByDay.get(day);
+        if (last != null && last.absorb(write)) {
+            return last.task;
+        }
+
+        pending.add(write);
+        lastPendingByDay.put(day, write);
+        if (!drainScheduled) {
+            drainScheduled = true;
+            writer.execute(this::drain);
+        }
+        return write.task;
+    }
+
+    /**
+     * Runs on the writer thread: takes everything queued so far and runs it, one transaction per run of
+     * consecutive writes of the same kind.
+     */
+    private void drain() {
+        List<Write> writes;
+        synchronized (this) {
+            writes = new ArrayList<>(pending);
+            pending.clear();
+            lastPendingByDay.clear();
+            drainScheduled = false;
+        }
+
+        int start = 0;
+        while (start < writes.size()) {
+            Kind kind = writes.get(start).kind;
+            int end = start + 1;
+            while (end < writes.size() && writes.get(end).kind == kind) {
+                end++;
+            }
+            runBatch(kind, writes.subList(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * Runs a batch of writes of the same kind in one transaction and completes their Futures.
+     *
+     * @param kind the kind of every write in the batch
+     * @param writes the writes to run
+     */
+    private void runBatch(Kind kind, List<Write> writes) {
+        List<Image> images = new ArrayList<>(writes.size());
+        List<Date> dates = new ArrayList<>(writes.size());
+        for (Write write : writes) {
+            images.add((kind == Kind.UPDATE) ? renamed(write.image, write.newName) : write.image);
+            dates.add(write.nasaDate);
+        }
+
+        boolean[] results = null;
+        RuntimeException error = null;
+        try {
+            switch (kind) {
+                case SAVE:
+                    results = dao.saveImages(images, context);
+                    break;
+                case UPDATE:
+                    results = dao.updateImages(images, context);
+                    break;
+                case DELETE:
+                    results = dao.deleteImages(images, context);
+                    break;
+                case RESTORE:
+                    results = dao.restoreImages(dates, context);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        for (int i = 0; i < writes.size(); i++) {
+            Write write = writes.get(i);
+            write.complete((results == null) ? null : results[i], error);
+        }
+    }
+
+    /**
+     * Returns a copy of an image with a different user-given name, leaving the caller's Image untouched.
+     *
+     * @param image the image to copy
+     * @param newName the name of the copy
+     * @return the renamed copy
+     */
+    private static Image renamed(Image image, String newName) {
+        return new Image(newName, image.getTitle(), image.getExplanation(),
+                image.getDownloadDate(), image.getNasaDate(), image.getFileName());
+    }
+
+    /**
+     * The kinds of write the queue can run.
+     */
+    private enum Kind { SAVE, UPDATE, DELETE, RESTORE }
+
+    /**
+     * A queued write and the Future its callers wait on.
+     */
+    private static class Write {
+        private final Kind kind;
+        /** The NASA date of the image being written */
+        private final Date nasaDate;
+        /** The image to write (null for restores); replaced when a rename is merged into a waiting save */
+        private Image image;
+        /** The new name, for updates */
+        private String newName;
+
+        /** The outcome, set on the writer thread just before the task is run */
+        private Boolean result;
+        private RuntimeException error;
+        /** The Future handed to callers; running it publishes the outcome */
+        private final FutureTask<Boolean> task = new FutureTask<>(() -> {
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        });
+
+        /**
+         * Constructor.
+         *
+         * @param kind the kind of write
+         * @param nasaDate the NASA date of the image being written
+         * @param image the image to write, or null for restores
+         * @param newName the new name, for updates
+         */
+        Write(Kind kind, Date nasaDate, Image image, String newName) {
+            this.kind = kind;
+            this.nasaDate = nasaDate;
+            this.image = image;
+            this.newName = newName;
+        }
+
+        /**
+         * Merges a later write to the same date into this one, if the merged write has the same effect as running both.
+         *
+         * @param later the later write
+         * @return true if the later write was merged and does not need to be queued
+         */
+        boolean absorb(Write later) {
+            if (kind == Kind.SAVE && later.kind == Kind.SAVE) {
+                // A second save of the same date would only fail on the unique date, so share the first save's result
+                return true;
+            }
+            if (later.kind != Kind.UPDATE) {
+                return false;
+            }
+            if (kind == Kind.UPDATE) {
+                // Only the last rename matters
+                image = later.image;
+                newName = later.newName;
+                return true;
+            }
+            if (kind == Kind.SAVE) {
+                // Save the image with its new name straight away
+                image = renamed(later.image, later.newName);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Publishes the outcome to everyone waiting on the Future.
+         *
+         * @param result true if the write succeeded
+         * @param error the exception thrown by the write, or null
+         */
+        void complete(Boolean result, RuntimeException error) {
+            this.result = result;
+            this.error = error;
+            task.run();
+        }
+    }
+}
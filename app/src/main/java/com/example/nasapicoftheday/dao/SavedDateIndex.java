@@ -0,0 +1,103 @@
+package com.example.nasapicoftheday.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateSet;
+
+/**
+ * The SavedDateIndex class keeps an in-memory DateSet of the dates that have a saved image,
+ * so a membership check is a single bit lookup that allocates nothing.
+ *
+ * @author Caitlin Ross
+ */
+class SavedDateIndex {
+    /** The days that have a saved image */
+    private final DateSet saved = new DateSet();
+    /** Days written to while the index was still loading; the database scan must not overwrite them */
+    private final DateSet touched = new DateSet();
+    /** True once the initial scan of the database has finished */
+    private volatile boolean ready = false;
+
+    /**
+     * Returns true once the index reflects every row in the database.
+     *
+     * @return true if the index can be used for lookups
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns true if an image is saved for the given date.
+     *
+     * @param date the date to look up
+     * @return true if the date's bit is set
+     */
+    synchronized boolean contains(Date date) {
+        return saved.contains(date);
+    }
+
+    /**
+     * Returns a copy of the saved days, which the caller may change.
+     *
+     * @return the days that have a saved image
+     */
+    synchronized DateSet copy() {
+        return saved.copy();
+    }
+
+    /**
+     * Records that an image was saved for the given date.
+     *
+     * @param date the date of the saved image
+     */
+    synchronized void add(Date date) {
+        saved.add(date);
+        if (!ready) {
+            touched.add(date);
+        }
+    }
+
+    /**
+     * Records that the image for the given date was deleted.
+     *
+     * @param date the date of the deleted image
+     */
+    synchronized void remove(Date date) {
+        saved.remove(date);
+        if (!ready) {
+            touched.add(date);
+        }
+    }
+
+    /**
+     * Fills the index from the database. Meant to be run once, off the main thread.
+     *
+     * @param database the open database connection
+     */
+    void load(SQLiteDatabase database) {
+        try (Cursor results = database.rawQuery(ImageDatabase.LOAD_DATES_SQL, null)) {
+            int imageDayColIndex = results.getColumnIndex(ImageOpener.COL_NASA_DAY);
+
+            while (results.moveToNext()) {
+                int day = results.getInt(imageDayColIndex);
+                synchronized (this) {
+                    // Writes made during the scan are newer than what the scan read
+                    if (day >= Date.FIRST_EPOCH_DAY && !touched.contains(day)) {
+                        saved.add(day);
+                    }
+                }
+            }
+        } catch (IllegalStateException e) {
+            // The database was closed before the scan finished; lookups keep using the database
+            return;
+        }
+
+        synchronized (this) {
+            touched.clear();
+            ready = true;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.nasapicoftheday.datamodel;
+
+import java.util.TimeZone;
+
+/**
+ * The Clock interface tells the Date class what time it is and in which time zone, so "today" can be pinned in tests.
+ *
+ * @author Caitlin Ross
+ */
+public interface Clock {
+    /** The device's clock and time zone */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public TimeZone getTimeZone() {
+            return TimeZone.getDefault();
+        }
+    };
+
+    /**
+     * Returns the current time.
+     *
+     * @return the current time in milliseconds since January 1, 1970 UTC
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns the time zone that decides which calendar day it is.
+     *
+     * @return the time zone
+     */
+    TimeZone getTimeZone();
+}
@@ -4,33 +4,42 @@ import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 
-import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * The CustomDate class is a custom version that only holds Year, Month, and Day.
  *
  * @author Caitlin Ross
  */
-public class Date {
-    /** For the purposes of this program, the year must be between 1995 and the current year */
-    private final Integer year;
-    /** Month represented as an integer between 1-12 */
-    private final Integer month;
-    /** Day of the month represented as an integer between 1-31 */
-    private final Integer day;
+public class Date implements Comparable<Date> {
+    /**
+     * The date packed into a single int as YYYYMMDD (e.g. 19950616).
+     * Packed dates sort in the same order as the dates themselves.
+     */
+    private final int packed;
 
     /** The following are constants used to extract data from a Bundle */
     public static final String YEAR_KEY = "Year";
     public static final String MONTH_KEY = "Month";
     public static final String DAY_KEY = "Day";
 
+    /** The first Image of the Day (June 16, 1995) as a count of days since January 1, 1970 */
+    public static final int FIRST_EPOCH_DAY = 9297;
+    /** The first Image of the Day (June 16, 1995) packed as YYYYMMDD */
+    private static final int FIRST_PACKED = 19950616;
+    /** Number of milliseconds in a day */
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /** The clock that decides what "today" is */
+    private static volatile Clock clock = Clock.SYSTEM;
+    /** The valid date range for the current day, or null until first needed (replaced, never modified) */
+    private static volatile Window window;
+
     /**
      * No-arg constructor creates a new CustomDate object based on today's date.
      */
     public Date() {
-        year = Calendar.getInstance().get(Calendar.YEAR);
-        month = Calendar.getInstance().get(Calendar.MONTH) + 1;
-        day = Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
+        packed = currentWindow().lastPacked;
     }
 
     /**
@@ -43,9 +52,7 @@ public class Date {
      */
     public Date(int y, int m, int d) throws IllegalArgumentException {
         if(isValidDate(y, m, d)) {
-            this.year = y;
-            this.month = m;
-            this.day = d;
+            this.packed = pack(y, m, d);
         } else {
             throw new IllegalArgumentException();
         }
@@ -58,24 +65,7 @@ public class Date {
      * @throws IllegalArgumentException if the argument is not in the required format
      */
     public Date(String date) throws IllegalArgumentException {
-        // Check if the String is the correct length
-        if(!date.matches("[0-9]{4}[-][0-9]{2}[-][0-9]{2}")) {
-            throw new IllegalArgumentException();
-        }
-
-        // Store the parsed integers in temporary variables just in case
-        int y = Integer.parseInt(date.substring(0, 4));
-        int m = Integer.parseInt(date.substring(5, 7));
-        int d = Integer.parseInt(date.substring(8));
-
-        // Check if the parsed integers are valid
-        if(isValidDate(y, m, d)) {
-            this.year = y;
-            this.month = m;
-            this.day = d;
-        } else {
-            throw new IllegalArgumentException();
-        }
+        this.packed = parse(date);
     }
 
     /**
@@ -85,29 +75,215 @@ public class Date {
      * @throws IllegalArgumentException if any ints are invalid
      */
     public Date(Bundle b) throws IllegalArgumentException {
-        // Store the parsed integers in temporary variables just in case
-        int y = b.getInt(YEAR_KEY);
-        int m = b.getInt(MONTH_KEY);
-        int d = b.getInt(DAY_KEY);
+        this(b.getInt(YEAR_KEY), b.getInt(MONTH_KEY), b.getInt(DAY_KEY));
+    }
+
+    /**
+     * Constructor used by the factory methods once the packed value has been validated.
+     *
+     * @param packed the date packed as YYYYMMDD
+     */
+    private Date(int packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Creates a Date from a count of days since January 1, 1970.
+     *
+     * @param epochDay the number of days since January 1, 1970
+     * @return the matching Date
+     * @throws IllegalArgumentException if the date is outside the valid range
+     */
+    public static Date ofEpochDay(int epochDay) throws IllegalArgumentException {
+        return ofPacked(civilFromEpochDay(epochDay));
+    }
+
+    /**
+     * Converts a count of days since January 1, 1970 to a date packed as YYYYMMDD, without validating it.
+     *
+     * @param epochDay the number of days since January 1, 1970
+     * @return the packed date
+     */
+    private static int civilFromEpochDay(int epochDay) {
+        // Shift to a calendar that starts in March so the leap day falls at the end of the year
+        int shifted = epochDay + 719468;
+        int era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int d = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int m = (shiftedMonth < 10) ? shiftedMonth + 3 : shiftedMonth - 9;
+        int y = yearOfEra + era * 400 + (m <= 2 ? 1 : 0);
+        return pack(y, m, d);
+    }
+
+    /**
+     * Creates a Date from a date packed as YYYYMMDD.
+     *
+     * @param packed the date packed as YYYYMMDD (e.g. 19950616)
+     * @return the matching Date
+     * @throws IllegalArgumentException if the date is outside the valid range
+     */
+    public static Date ofPacked(int packed) throws IllegalArgumentException {
+        return ofValidated(packed / 10000, (packed / 100) % 100, packed % 100);
+    }
+
+    /**
+     * Validates the year, month and day, then creates the Date.
+     *
+     * @param y the year
+     * @param m the month (1-12)
+     * @param d the day of the month (1-31)
+     * @return the matching Date
+     * @throws IllegalArgumentException if the date is outside the valid range
+     */
+    private static Date ofValidated(int y, int m, int d) throws IllegalArgumentException {
+        if (!isValidDate(y, m, d)) {
+            throw new IllegalArgumentException();
+        }
+        return new Date(pack(y, m, d));
+    }
+
+    /**
+     * Parses a YYYY-MM-DD String into a packed date, reading the characters directly.
+     *
+     * @param date the day as a 10-character String (YYYY-MM-DD)
+     * @return the date packed as YYYYMMDD
+     * @throws IllegalArgumentException if the argument is not in the required format or not a valid date
+     */
+    private static int parse(CharSequence date) throws IllegalArgumentException {
+        if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            throw new IllegalArgumentException();
+        }
+        int y = digits(date, 0, 4);
+        int m = digits(date, 5, 7);
+        int d = digits(date, 8, 10);
 
         // Check if the parsed integers are valid
-        if(isValidDate(y, m, d)) {
-            this.year = y;
-            this.month = m;
-            this.day = d;
-        } else {
+        if (!isValidDate(y, m, d)) {
             throw new IllegalArgumentException();
         }
+        return pack(y, m, d);
+    }
+
+    /**
+     * Reads a run of decimal digits.
+     *
+     * @param text the text to read from
+     * @param start the index of the first digit
+     * @param end the index after the last digit
+     * @return the number the digits represent
+     * @throws IllegalArgumentException if any character in the range is not a digit
+     */
+    private static int digits(CharSequence text, int start, int end) throws IllegalArgumentException {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException();
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 
+    /**
+     * Packs a year, month and day into a single int as YYYYMMDD.
+     *
+     * @param y the year
+     * @param m the month (1-12)
+     * @param d the day of the month (1-31)
+     * @return the packed date
+     */
+    private static int pack(int y, int m, int d) {
+        return y * 10000 + m * 100 + d;
+    }
+
+    /**
+     * Returns the year.
+     *
+     * @return the year (1995 - current year)
+     */
+    public int getYear() { return packed / 10000; }
+
+    /**
+     * Returns the month.
+     *
+     * @return the month (1-12)
+     */
+    public int getMonth() { return (packed / 100) % 100; }
+
+    /**
+     * Returns the day of the month.
+     *
+     * @return the day of the month (1-31)
+     */
+    public int getDay() { return packed % 100; }
+
+    /**
+     * Returns the date packed into a single int as YYYYMMDD.
+     *
+     * @return the packed date (e.g. 19950616)
+     */
+    public int toPacked() { return packed; }
+
     /**
      * Returns true if the dates match.
      *
-     * @param d the date to compare
-     * @return true if the year, month, and day are the same
+     * @param o the object to compare
+     * @return true if o is a Date with the same year, month, and day
+     */
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof Date) && ((Date) o).packed == packed;
+    }
+
+    /**
+     * Returns a hash code consistent with equals.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return packed;
+    }
+
+    /**
+     * Compares two dates chronologically.
+     *
+     * @param d the date to compare to
+     * @return a negative number, zero, or a positive number if this date is before, the same as, or after the other
+     */
+    @Override
+    public int compareTo(Date d) {
+        return Integer.compare(packed, d.packed);
+    }
+
+    /**
+     * Returns the number of days between January 1, 1970 and this date.
+     *
+     * @return the date as a count of days since January 1, 1970
+     */
+    public int toEpochDay() {
+        int year = getYear();
+        int month = getMonth();
+        // Shift the year to start in March so the leap day falls at the end of the year
+        int y = (month <= 2) ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + getDay() - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the number of days between the first Image of the Day (June 16, 1995) and this date.
+     *
+     * @return the date as a count of days since June 16, 1995
      */
-    public boolean equals(Date d) {
-        return ((d.year.equals(this.year)) && (d.month.equals(this.month)) && (d.day.equals(this.day)));
+    public int getDayOffset() {
+        return toEpochDay() - FIRST_EPOCH_DAY;
     }
 
     /**
@@ -116,8 +292,40 @@ public class Date {
      * @return the date as a String (YYYY-MM-DD)
      */
     @NonNull
+    @Override
     public String toString() {
-        return yearString() + "-" + monthString() + "-" + dayString();
+        return format(packed);
+    }
+
+    /**
+     * Formats a count of days since January 1, 1970 as YYYY-MM-DD, without checking that it is a valid APOD date.
+     *
+     * @param epochDay the number of days since January 1, 1970
+     * @return the day as a String (YYYY-MM-DD)
+     */
+    static String formatEpochDay(int epochDay) {
+        return format(civilFromEpochDay(epochDay));
+    }
+
+    /**
+     * Formats a packed date as YYYY-MM-DD, writing the characters straight into the String's array.
+     *
+     * @param packed the date packed as YYYYMMDD
+     * @return the date as a String (YYYY-MM-DD)
+     */
+    private static String format(int packed) {
+        int year = packed / 10000;
+        int month = (packed / 100) % 100;
+        int day = packed % 100;
+        char[] chars = {
+                (char) ('0' + year / 1000), (char) ('0' + (year / 100) % 10),
+                (char) ('0' + (year / 10) % 10), (char) ('0' + year % 10),
+                '-',
+                (char) ('0' + month / 10), (char) ('0' + month % 10),
+                '-',
+                (char) ('0' + day / 10), (char) ('0' + day % 10)
+        };
+        return new String(chars);
     }
 
     /**
@@ -128,9 +336,9 @@ public class Date {
     public Bundle getBundle() {
         Bundle b = new Bundle();
 
-        b.putInt(YEAR_KEY, year);
-        b.putInt(MONTH_KEY, month);
-        b.putInt(DAY_KEY, day);
+        b.putInt(YEAR_KEY, getYear());
+        b.putInt(MONTH_KEY, getMonth());
+        b.putInt(DAY_KEY, getDay());
 
         return b;
     }
@@ -172,38 +380,48 @@ public class Date {
     }
 
     /**
-     * Returns a String representation of the year.
+     * Replaces the clock used to decide what "today" is, e.g. to pin the date in tests.
      *
-     * @return the year as a 4-character String (1995-current year)
+     * @param newClock the clock to use, or null to go back to the system clock
      */
-    private String yearString() {
-        return year.toString();
+    public static void setClock(Clock newClock) {
+        clock = (newClock == null) ? Clock.SYSTEM : newClock;
+        window = null;
     }
 
     /**
-     * Returns a String representation of the month.
+     * Returns today's date as a count of days since January 1, 1970.
      *
-     * @return the month as a 2-character String (01-12)
+     * @return the last valid epoch day
      */
-    private String monthString() {
-        if(month < 10) {
-            return "0" + month;
-        } else {
-            return month.toString();
-        }
+    static int todayEpochDay() {
+        return currentWindow().lastEpochDay;
     }
 
     /**
-     * Returns a String representation of the day of the month.
+     * Returns the valid date range for today, working it out again only when the day (or the clock) has changed.
      *
-     * @return the day of the month as a 2-character String (01-31)
+     * @return the current Window
      */
-    private String dayString() {
-        if(day < 10) {
-            return "0" + day;
-        } else {
-            return day.toString();
+    private static Window currentWindow() {
+        Clock current = clock;
+        long now = current.currentTimeMillis();
+        Window cached = window;
+        if (cached == null || cached.clock != current || now < cached.startsAt || now >= cached.endsAt) {
+            cached = new Window(current, now);
+            window = cached;
         }
+        return cached;
+    }
+
+    /**
+     * Returns true if a year is a leap year in the Gregorian calendar.
+     *
+     * @param y the year
+     * @return true if February has 29 days in that year
+     */
+    private static boolean isLeapYear(int y) {
+        return (y % 4 == 0) && (y % 100 != 0 || y % 400 == 0);
     }
 
     /**
@@ -215,20 +433,11 @@ public class Date {
      * @return true if the date is valid
      */
     private static boolean isValidDate(int y, int m, int d) {
-        // Before validating, get current year, month, day
-        int currYear = Calendar.getInstance().get(Calendar.YEAR);
-        int currMonth = Calendar.getInstance().get(Calendar.MONTH) + 1;
-        int currDay = Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
-
-        // First, check if the year is between 1995 and now
-        if(y < 1995 || y > currYear) {
-            return false;
-        }
-        // Second, check if the month is between 1 and 12 (inclusive)
+        // First, check if the month is between 1 and 12 (inclusive)
         if(m < 1 || m > 12) {
             return false;
         }
-        // Third, check if the day of the month is between 1 and 31 (inclusive)
+        // Second, check if the day of the month is between 1 and 31 (inclusive)
         if(d < 1 || d > 31) {
             return false;
         }
@@ -236,30 +445,48 @@ public class Date {
         // Next, check if the day of the month is invalid for the given month
         // i.e. Feb 29-31 (except Feb 29 on leap years), April 31, June 31, Sep 31 and Nov 31
         if(m == 2) {
-            if((y % 4 != 0) && (d > 28)){
-                return false;
-            } else if ((y % 4 == 0) && (d > 29)) {
+            if(d > (isLeapYear(y) ? 29 : 28)) {
                 return false;
             }
         } else if ((d > 30) && (m == 4 || m == 6 || m == 9 || m == 11)) {
             return false;
         }
 
-        // Next, check if the date is before June 16, 1995
-        if(y == 1995) {
-            // If the year is 1995, ensure the month is June or later
-            // If the month is June, ensure the day of the month is the 16th or later
-            if(m < 6) {
-                return false;
-            } else return (m != 6) || (d >= 16);
-        }
-        // Next, check if the date is in the future
-        if (y == currYear) {
-            if(m > (currMonth)) {
-                return false;
-            } else return (m != currMonth) || (d <= currDay);
+        // Finally, check the date is between June 16, 1995 and today; packed dates compare in date order
+        int p = pack(y, m, d);
+        return p >= FIRST_PACKED && p <= currentWindow().lastPacked;
+    }
+
+    /**
+     * The range of valid dates for one calendar day: from June 16, 1995 up to that day.
+     */
+    private static class Window {
+        /** The clock the window was worked out from */
+        private final Clock clock;
+        /** Today, as a count of days since January 1, 1970 */
+        private final int lastEpochDay;
+        /** Today, packed as YYYYMMDD */
+        private final int lastPacked;
+        /** The time today started and the time it ends, in milliseconds since January 1, 1970 UTC */
+        private final long startsAt;
+        private final long endsAt;
+
+        /**
+         * Constructor.
+         *
+         * @param clock the clock in use
+         * @param now the current time from that clock
+         */
+        Window(Clock clock, long now) {
+            this.clock = clock;
+            TimeZone zone = clock.getTimeZone();
+            int offset = zone.getOffset(now);
+            this.lastEpochDay = (int) ((now + offset) / MILLIS_PER_DAY);
+            this.startsAt = lastEpochDay * MILLIS_PER_DAY - offset;
+            // The offset may change overnight (daylight saving time), so use the one in force at midnight
+            long nextMidnight = (lastEpochDay + 1) * MILLIS_PER_DAY;
+            this.endsAt = nextMidnight - zone.getOffset(nextMidnight - offset);
+            this.lastPacked = civilFromEpochDay(lastEpochDay);
         }
-        // If all previous checks are fine, return true
-        return true;
     }
 }
@@ -0,0 +1,249 @@
+package com.example.nasapicoftheday.datamodel;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The DateRange class represents an inclusive run of consecutive days, stored as two epoch days.
+ * A range may be empty (its last day before its first). DateRanges are immutable.
+ *
+ * @author Caitlin Ross
+ */
+public class DateRange {
+    /** The empty range */
+    public static final DateRange EMPTY = new DateRange(0, -1);
+
+    /** The first and last day of the range (inclusive), as counts of days since January 1, 1970 */
+    private final int firstDay;
+    private final int lastDay;
+
+    /**
+     * Constructor using two dates.
+     *
+     * @param first the first date in the range
+     * @param last the last date in the range
+     * @throws IllegalArgumentException if last is before first
+     */
+    public DateRange(Date first, Date last) throws IllegalArgumentException {
+        this(first.toEpochDay(), last.toEpochDay());
+        if (firstDay > lastDay) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Constructor using two epoch days, which need not be valid APOD dates.
+     *
+     * @param firstDay the first day in the range
+     * @param lastDay the last day in the range; before firstDay for an empty range
+     */
+    private DateRange(int firstDay, int lastDay) {
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Creates a range from two epoch days.
+     *
+     * @param firstDay the first day in the range, as a count of days since January 1, 1970
+     * @param lastDay the last day in the range (inclusive)
+     * @return the range, or EMPTY if lastDay is before firstDay
+     */
+    public static DateRange ofEpochDays(int firstDay, int lastDay) {
+        return (firstDay > lastDay) ? EMPTY : new DateRange(firstDay, lastDay);
+    }
+
+    /**
+     * Returns the range of every valid APOD date: June 16, 1995 up to today.
+     *
+     * @return the whole archive as a DateRange
+     */
+    public static DateRange archive() {
+        return new DateRange(Date.FIRST_EPOCH_DAY, Date.todayEpochDay());
+    }
+
+    /**
+     * Returns the first day of the range.
+     *
+     * @return the first day, as a count of days since January 1, 1970
+     */
+    public int getFirstEpochDay() { return firstDay; }
+
+    /**
+     * Returns the last day of the range (inclusive).
+     *
+     * @return the last day, as a count of days since January 1, 1970
+     */
+    public int getLastEpochDay() { return lastDay; }
+
+    /**
+     * Returns the first day of the range as a Date.
+     *
+     * @return the first date
+     * @throws IllegalArgumentException if the range is empty or the day is not a valid APOD date
+     */
+    public Date getFirst() throws IllegalArgumentException {
+        if (isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return Date.ofEpochDay(firstDay);
+    }
+
+    /**
+     * Returns the last day of the range as a Date.
+     *
+     * @return the last date
+     * @throws IllegalArgumentException if the range is empty or the day is not a valid APOD date
+     */
+    public Date getLast() throws IllegalArgumentException {
+        if (isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        return Date.ofEpochDay(lastDay);
+    }
+
+    /**
+     * Returns true if the range has no days.
+     *
+     * @return true if the range is empty
+     */
+    public boolean isEmpty() {
+        return firstDay > lastDay;
+    }
+
+    /**
+     * Returns the number of days in the range.
+     *
+     * @return the number of days
+     */
+    public int size() {
+        return isEmpty() ? 0 : lastDay - firstDay + 1;
+    }
+
+    /**
+     * Returns true if a date falls inside the range.
+     *
+     * @param date the date to check
+     * @return true if the date is in the range
+     */
+    public boolean contains(Date date) {
+        int day = date.toEpochDay();
+        return day >= firstDay && day <= lastDay;
+    }
+
+    /**
+     * Returns the days this range shares with another.
+     *
+     * @param other the other range
+     * @return the overlap, or EMPTY if the ranges do not overlap
+     */
+    public DateRange intersect(DateRange other) {
+        return ofEpochDays(Math.max(firstDay, other.firstDay), Math.min(lastDay, other.lastDay));
+    }
+
+    /**
+     * Returns the part of this range that holds valid APOD dates (June 16, 1995 up to today).
+     *
+     * @return the valid part of the range, or EMPTY if there is none
+     */
+    public DateRange intersectArchive() {
+        return ofEpochDays(Math.max(firstDay, Date.FIRST_EPOCH_DAY), Math.min(lastDay, Date.todayEpochDay()));
+    }
+
+    /**
+     * Splits the range into consecutive, non-overlapping pieces of nearly equal size, e.g. to share the work
+     * between threads or to stay under a per-request limit.
+     *
+     * @param parts the maximum number of pieces
+     * @return between 1 and parts pieces, in date order (the range itself if it is empty or parts is 1)
+     * @throws IllegalArgumentException if parts is less than 1
+     */
+    public DateRange[] split(int parts) throws IllegalArgumentException {
+        if (parts < 1) {
+            throw new IllegalArgumentException();
+        }
+        int size = size();
+        if (size <= 1 || parts == 1) {
+            return new DateRange[] { this };
+        }
+        int count = Math.min(parts, size);
+        DateRange[] pieces = new DateRange[count];
+        int start = firstDay;
+        for (int i = 0; i < count; i++) {
+            // The first (size % count) pieces get one extra day
+            int length = size / count + ((i < size % count) ? 1 : 0);
+            pieces[i] = new DateRange(start, start + length - 1);
+            start += length;
+        }
+        return pieces;
+    }
+
+    /**
+     * Splits the range into consecutive pieces of at most a given number of days.
+     *
+     * @param maxDays the most days in one piece
+     * @return the pieces, in date order (none if the range is empty)
+     * @throws IllegalArgumentException if maxDays is less than 1
+     */
+    public DateRange[] chunks(int maxDays) throws IllegalArgumentException {
+        if (maxDays < 1) {
+            throw new IllegalArgumentException();
+        }
+        int size = size();
+        DateRange[] pieces = new DateRange[(size + maxDays - 1) / maxDays];
+        for (int i = 0; i < pieces.length; i++) {
+            int start = firstDay + i * maxDays;
+            pieces[i] = new DateRange(start, Math.min(start + maxDays - 1, lastDay));
+        }
+        return pieces;
+    }
+
+    /**
+     * Passes every day in the range, in order, to a consumer. Nothing is allocated per day.
+     *
+     * @param consumer receives each day as an epoch day
+     */
+    public void forEachDay(DayConsumer consumer) {
+        for (int day = firstDay; day <= lastDay; day++) {
+            consumer.accept(day);
+        }
+    }
+
+    /**
+     * Returns true if the other object is a DateRange with the same days.
+     *
+     * @param o the object to compare
+     * @return true if the ranges match (all empty ranges match)
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DateRange)) {
+            return false;
+        }
+        DateRange other = (DateRange) o;
+        return (isEmpty() && other.isEmpty()) || (firstDay == other.firstDay && lastDay == other.lastDay);
+    }
+
+    /**
+     * Returns a hash code consistent with equals.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return isEmpty() ? 0 : 31 * firstDay + lastDay;
+    }
+
+    /**
+     * Returns a String representation of the range (YYYY-MM-DD..YYYY-MM-DD).
+     *
+     * @return the range as a String, or "empty"
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "empty";
+        }
+        return Date.formatEpochDay(firstDay) + ".." + Date.formatEpochDay(lastDay);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.nasapicoftheday.datamodel;
+
+import java.util.BitSet;
+
+/**
+ * The DateSet class is a set of APOD dates stored as one bit per day, counted from the first Image of the Day
+ * (June 16, 1995). Adding, removing and looking up a day is a single bit operation, and union and difference
+ * work a 64-day word at a time. DateSets are not thread-safe.
+ *
+ * @author Caitlin Ross
+ */
+public class DateSet {
+    /** Enough bits for roughly thirty years of images; the BitSet grows if needed */
+    private static final int INITIAL_CAPACITY = 12 * 1024;
+
+    /** One bit per day offset from June 16, 1995 */
+    private final BitSet days;
+
+    /**
+     * No-arg constructor creates an empty set.
+     */
+    public DateSet() {
+        this(new BitSet(INITIAL_CAPACITY));
+    }
+
+    /**
+     * Constructor that wraps an existing BitSet.
+     *
+     * @param days one bit per day offset from June 16, 1995
+     */
+    private DateSet(BitSet days) {
+        this.days = days;
+    }
+
+    /**
+     * Creates a set holding every day of a range that falls on or after June 16, 1995.
+     *
+     * @param range the days to add
+     * @return the new set
+     */
+    public static DateSet of(DateRange range) {
+        DateSet set = new DateSet();
+        set.addAll(range);
+        return set;
+    }
+
+    /**
+     * Returns true if the set holds the given day.
+     *
+     * @param epochDay the day, as a count of days since January 1, 1970
+     * @return true if the day is in the set
+     */
+    public boolean contains(int epochDay) {
+        int offset = epochDay - Date.FIRST_EPOCH_DAY;
+        return offset >= 0 && days.get(offset);
+    }
+
+    /**
+     * Returns true if the set holds the given date.
+     *
+     * @param date the date to look up
+     * @return true if the date is in the set
+     */
+    public boolean contains(Date date) {
+        return contains(date.toEpochDay());
+    }
+
+    /**
+     * Adds a day to the set.
+     *
+     * @param epochDay the day, as a count of days since January 1, 1970
+     * @throws IllegalArgumentException if the day is before June 16, 1995
+     */
+    public void add(int epochDay) throws IllegalArgumentException {
+        days.set(offsetOf(epochDay));
+    }
+
+    /**
+     * Adds a date to the set.
+     *
+     * @param date the date to add
+     */
+    public void add(Date date) {
+        add(date.toEpochDay());
+    }
+
+    /**
+     * Removes a day from the set.
+     *
+     * @param epochDay the day, as a count of days since January 1, 1970
+     */
+    public void remove(int epochDay) {
+        int offset = epochDay - Date.FIRST_EPOCH_DAY;
+        if (offset >= 0) {
+            days.clear(offset);
+        }
+    }
+
+    /**
+     * Removes a date from the set.
+     *
+     * @param date the date to remove
+     */
+    public void remove(Date date) {
+        remove(date.toEpochDay());
+    }
+
+    /**
+     * Adds every day of a range that falls on or after June 16, 1995.
+     *
+     * @param range the days to add
+     */
+    public void addAll(DateRange range) {
+        int first = Math.max(range.getFirstEpochDay(), Date.FIRST_EPOCH_DAY);
+        int last = range.getLastEpochDay();
+        if (first <= last) {
+            days.set(offsetOf(first), offsetOf(last) + 1);
+        }
+    }
+
+    /**
+     * Adds every day in another set (union).
+     *
+     * @param other the days to add
+     */
+    public void addAll(DateSet other) {
+        days.or(other.days);
+    }
+
+    /**
+     * Removes every day in another set (difference).
+     *
+     * @param other the days to remove
+     */
+    public void removeAll(DateSet other) {
+        days.andNot(other.days);
+    }
+
+    /**
+     * Keeps only the days that are also in another set (intersection).
+     *
+     * @param other the days to keep
+     */
+    public void retainAll(DateSet other) {
+        days.and(other.days);
+    }
+
+    /**
+     * Returns the days of a range that are not in this set, e.g. the days in a range with no saved image.
+     *
+     * @param range the days to check
+     * @return a new set holding the days of the range (from June 16, 1995 on) that this set does not hold
+     */
+    public DateSet missingIn(DateRange range) {
+        DateSet missing = of(range);
+        missing.removeAll(this);
+        return missing;
+    }
+
+    /**
+     * Returns the number of days in the set.
+     *
+     * @return the number of days
+     */
+    public int size() {
+        return days.cardinality();
+    }
+
+    /**
+     * Returns true if the set holds no days.
+     *
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    /**
+     * Removes every day from the set.
+     */
+    public void clear() {
+        days.clear();
+    }
+
+    /**
+     * Returns a copy of this set that can be changed independently.
+     *
+     * @return the copy
+     */
+    public DateSet copy() {
+        return new DateSet((BitSet) days.clone());
+    }
+
+    /**
+     * Passes every day in the set, in order, to a consumer. Nothing is allocated per day.
+     *
+     * @param consumer receives each day as an epoch day
+     */
+    public void forEachDay(DayConsumer consumer) {
+        for (int offset = days.nextSetBit(0); offset >= 0; offset = days.nextSetBit(offset + 1)) {
+            consumer.accept(offset + Date.FIRST_EPOCH_DAY);
+        }
+    }
+
+    /**
+     * Returns true if the other object is a DateSet holding the same days.
+     *
+     * @param o the object to compare
+     * @return true if the sets match
+     */
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof DateSet) && ((DateSet) o).days.equals(days);
+    }
+
+    /**
+     * Returns a hash code consistent with equals.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return days.hashCode();
+    }
+
+    /**
+     * Converts an epoch day to a bit index.
+     *
+     * @param epochDay the day, as a count of days since January 1, 1970
+     * @return the day's offset from June 16, 1995
+     * @throws IllegalArgumentException if the day is before June 16, 1995
+     */
+    private static int offsetOf(int epochDay) throws IllegalArgumentException {
+        int offset = epochDay - Date.FIRST_EPOCH_DAY;
+        if (offset < 0) {
+            throw new IllegalArgumentException();
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.nasapicoftheday.datamodel;
+
+/**
+ * The DayConsumer interface receives days one at a time from a DateRange or DateSet, as plain epoch days so
+ * iterating allocates nothing.
+ *
+ * @author Caitlin Ross
+ */
+public interface DayConsumer {
+    /**
+     * Receives the next day.
+     *
+     * @param epochDay the day, as a count of days since January 1, 1970
+     */
+    void accept(int epochDay);
+}
@@ -2,15 +2,15 @@ package com.example.nasapicoftheday.datamodel;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import com.example.nasapicoftheday.images.BitmapCache;
+
 import java.util.UUID;
 
 /**
- * The Image class contains the actual image and relevant metadata.
+ * The Image class contains an image's metadata and the name of its file; the picture itself is decoded on demand
+ * through the shared BitmapCache.
  *
  * @author Caitlin Ross
  */
@@ -19,18 +19,19 @@ public class Image {
     private String name;
     /** The title of the image assigned by NASA */
     private final String title;
+    /** NASA's explanation of the image, or null if it is not known */
+    private final String explanation;
     /** The date the image was downloaded to disk */
     private final Date downloadDate;
     /** The date the image was NASA's Image of the Day */
     private final Date nasaDate;
     /** The name of the file on disk containing the image */
     private final String fileName;
-    /** The Bitmap with the actual image */
-    private Bitmap imageRaster;
 
     /** Static constants used for loading/extracting data from a Bundle */
     public static final String NAME_KEY = "ImageName";
     public static final String TITLE_KEY = "ImageTitle";
+    public static final String EXPLANATION_KEY = "ImageExplanation";
     public static final String DL_DATE_KEY = "DownloadDate";
     public static final String NASA_DATE_KEY = "NasaDate";
     public static final String FILE_NAME_KEY = "FileName";
@@ -45,12 +46,7 @@ public class Image {
      */
     public Image(String title, Date downloadDate, Date nasaDate, String fileName)
             throws IllegalFileExtensionException {
-        this.name = null;
-        this.title = title;
-        this.downloadDate = downloadDate;
-        this.nasaDate = nasaDate;
-        this.fileName = validateFileName(fileName);
-        this.imageRaster = null;
+        this(null, title, null, downloadDate, nasaDate, fileName);
     }
 
     /**
@@ -64,12 +60,27 @@ public class Image {
      */
     public Image(String name, String title, Date downloadDate, Date nasaDate, String fileName)
             throws IllegalFileExtensionException {
+        this(name, title, null, downloadDate, nasaDate, fileName);
+    }
+
+    /**
+     * Constructor used when NASA's explanation of the image is known.
+     *
+     * @param name the user-provided name of the image
+     * @param title the title of the image as provided by NASA
+     * @param explanation the explanation of the image as provided by NASA
+     * @param downloadDate the date the image was downloaded
+     * @param nasaDate the date the image was Image of the Day
+     * @param fileName the name of the JPEG file
+     */
+    public Image(String name, String title, String explanation, Date downloadDate, Date nasaDate, String fileName)
+            throws IllegalFileExtensionException {
         this.name = name;
         this.title = title;
+        this.explanation = explanation;
         this.downloadDate = downloadDate;
         this.nasaDate = nasaDate;
         this.fileName = validateFileName(fileName);
-        this.imageRaster = null;
     }
 
     /**
@@ -80,6 +91,7 @@ public class Image {
     public Image(Bundle bundle) {
         name = bundle.getString(NAME_KEY);
         title = bundle.getString(TITLE_KEY);
+        explanation = bundle.getString(EXPLANATION_KEY);
         downloadDate = new Date(bundle.getString(DL_DATE_KEY));
         nasaDate = new Date(bundle.getString(NASA_DATE_KEY));
         fileName = bundle.getString(FILE_NAME_KEY);
@@ -97,6 +109,13 @@ public class Image {
         return name;
     }
 
+    /**
+     * Returns the user-defined name exactly as it was set, without falling back to the title.
+     *
+     * @return the image's user-defined name, which may be null or empty
+     */
+    public String getGivenName() { return name; }
+
     /**
      * Returns the image's title as defined by NASA.
      *
@@ -104,6 +123,13 @@ public class Image {
      */
     public String getTitle() { return title; }
 
+    /**
+     * Returns NASA's explanation of the image.
+     *
+     * @return the image's explanation, or null if it is not known
+     */
+    public String getExplanation() { return explanation; }
+
     /**
      * Returns the date the image was downloaded onto disk.
      *
@@ -125,16 +151,26 @@ public class Image {
      */
     public String getFileName() { return fileName; }
 
-    public Bitmap loadImage(Context parentActivity) {
-        if (imageRaster == null) {
-            try {
-                FileInputStream inputStream = parentActivity.openFileInput(fileName);
-                imageRaster = BitmapFactory.decodeStream(inputStream);
-            } catch (FileNotFoundException fe) {
-                fe.printStackTrace();
-            }
-        }
-        return imageRaster;
+    /**
+     * Returns the full-size picture, from the shared BitmapCache if it is there.
+     *
+     * @param context the context the method is called from
+     * @return the picture, or null if its file is missing or cannot be decoded
+     */
+    public Bitmap loadImage(Context context) {
+        return loadImage(context, 0, 0);
+    }
+
+    /**
+     * Returns the picture decoded to fit the size it is shown at, from the shared BitmapCache if it is there.
+     *
+     * @param context the context the method is called from
+     * @param targetWidth the width it is shown at, in pixels, or 0 for full size
+     * @param targetHeight the height it is shown at, in pixels, or 0 for full size
+     * @return the picture, or null if its file is missing or cannot be decoded
+     */
+    public Bitmap loadImage(Context context, int targetWidth, int targetHeight) {
+        return BitmapCache.getInstance(context).get(fileName, targetWidth, targetHeight);
     }
 
     /**
@@ -156,6 +192,7 @@ public class Image {
 
         b.putString(NAME_KEY, name);
         b.putString(TITLE_KEY, title);
+        b.putString(EXPLANATION_KEY, explanation);
         b.putString(DL_DATE_KEY, downloadDate.toString());
         b.putString(NASA_DATE_KEY, nasaDate.toString());
         b.putString(FILE_NAME_KEY, fileName);
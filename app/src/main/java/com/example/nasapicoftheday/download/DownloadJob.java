@@ -0,0 +1,271 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.network.ApodMetadata;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DownloadJob class tracks the download of one day's image through the DownloadScheduler.
+ * Its state is updated by the scheduler; callers only read it.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadJob {
+    /** Shortest interval between progress updates, in nanoseconds (the last block is always reported) */
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** The lanes jobs wait in; user jobs always go first */
+    public enum Priority { USER, BACKGROUND }
+
+    /** The stages a running job moves through, in order */
+    public enum Stage {
+        /** Reading the day's APOD entry */
+        METADATA,
+        /** Downloading the picture to the app's files */
+        FETCH,
+        /** Saving the image record to the database */
+        PERSIST,
+        /** Reading back the record the saved images list will show */
+        INDEX
+    }
+
+    /** The states a job moves through */
+    public enum State {
+        /** Waiting for a worker */
+        QUEUED,
+        /** Being downloaded */
+        RUNNING,
+        /** Downloaded and saved; getImage() returns the image */
+        SUCCEEDED,
+        /** The day's entry is not a picture (e.g. a video), so there was nothing to download */
+        SKIPPED,
+        /** The download failed; getError() returns the reason */
+        FAILED,
+        /** Cancelled before it finished */
+        CANCELLED;
+
+        /**
+         * Returns true if the job will not change state again.
+         *
+         * @return true for SUCCEEDED, SKIPPED, FAILED and CANCELLED
+         */
+        public boolean isFinished() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    /** The NASA date being downloaded */
+    private final Date date;
+    /** The day's APOD entry, if the caller already had it (otherwise it is fetched when the job runs) */
+    private final ApodMetadata metadata;
+    /** The lane the job waits in; a background job is promoted if the user asks for the same date */
+    private volatile Priority priority;
+    private volatile State state = State.QUEUED;
+    /** The stage a running job is in, or null before it starts */
+    private volatile Stage stage;
+    /** When the current stage started, from System.nanoTime() (worker thread only) */
+    private long stageStartedAt;
+    /** How far the picture download has got, or null until it starts */
+    private volatile DownloadProgress progress;
+    /** Measures the picture download's transfer rate (worker thread only) */
+    private ThroughputMeter meter;
+    /** When progress was last reported, from System.nanoTime() (worker thread only) */
+    private long progressReportedAt;
+    /** The saved image, once the job has succeeded */
+    private volatile Image image;
+    /** Why the job failed, if it did */
+    private volatile Exception error;
+    /** True once cancel has been called for the job */
+    volatile boolean cancelRequested = false;
+    /** True once the job has gone without progress for longer than the scheduler's stall timeout */
+    volatile boolean timedOut = false;
+    /** True once the picture is on disk, after which the job is never timed out (guarded by the scheduler) */
+    boolean fetched = false;
+    /** When the job last made progress, from System.nanoTime() */
+    volatile long lastProgressAt;
+    /** The pending check for a stall, or null (guarded by the scheduler) */
+    ScheduledFuture<?> stallCheck;
+    /** The scheduler running the job, told when it moves to a new stage */
+    private final DownloadScheduler scheduler;
+    /** The worker thread running the job, so a cancel can interrupt it (guarded by the scheduler) */
+    Thread worker;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler the scheduler running the job
+     * @param date the NASA date to download
+     * @param metadata the day's APOD entry, or null to fetch it when the job runs
+     * @param priority the lane to wait in
+     */
+    DownloadJob(DownloadScheduler scheduler, Date date, ApodMetadata metadata, Priority priority) {
+        this.scheduler = scheduler;
+        this.date = date;
+        this.metadata = metadata;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the NASA date being downloaded.
+     *
+     * @return the date
+     */
+    public Date getDate() { return date; }
+
+    /**
+     * Returns the day's APOD entry, if it was known when the job was scheduled.
+     *
+     * @return the entry, or null
+     */
+    ApodMetadata getMetadata() { return metadata; }
+
+    /**
+     * Returns the lane the job waits in.
+     *
+     * @return the job's priority
+     */
+    public Priority getPriority() { return priority; }
+
+    /**
+     * Returns the job's current state.
+     *
+     * @return the state
+     */
+    public State getState() { return state; }
+
+    /**
+     * Returns the stage the job is in, or was in when it finished.
+     *
+     * @return the stage, or null if the job has not started
+     */
+    public Stage getStage() { return stage; }
+
+    /**
+     * Returns how far the picture download has got.
+     *
+     * @return the latest progress, or null if the download has not started (or another job is downloading the
+     *         same picture)
+     */
+    public DownloadProgress getProgress() { return progress; }
+
+    /**
+     * Returns the saved image.
+     *
+     * @return the image, or null unless the job has succeeded
+     */
+    public Image getImage() { return image; }
+
+    /**
+     * Returns why the job failed.
+     *
+     * @return the exception, or null unless the job has failed
+     */
+    public Exception getError() { return error; }
+
+    /**
+     * Changes the lane the job waits in.
+     *
+     * @param priority the new priority
+     */
+    void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Moves the job to a new state.
+     *
+     * @param state the new state
+     * @param image the saved image, for SUCCEEDED
+     * @param error the reason, for FAILED
+     */
+    void setState(State state, Image image, Exception error) {
+        this.image = image;
+        this.error = error;
+        this.state = state;
+    }
+
+    /**
+     * Moves a running job to its next stage and tells the scheduler's listeners, unless the job has been cancelled
+     * or has timed out, so a worker stops between stages. Once the picture has been fetched, only a cancel stops
+     * the job.
+     *
+     * @param next the stage the job is starting
+     * @throws InterruptedIOException if the job has been cancelled or has timed out
+     */
+    void enterStage(Stage next) throws InterruptedIOException {
+        if (next.compareTo(Stage.FETCH) > 0) {
+            // The picture is on disk, so a slow download that has just finished must not fail now
+            scheduler.fetchFinished(this);
+        }
+        checkCancelled();
+        madeProgress();
+        Stage finished = stage;
+        long finishedMillis = getStageMillis();
+        stage = next;
+        stageStartedAt = System.nanoTime();
+        scheduler.stageChanged(this, finished, finishedMillis);
+    }
+
+    /**
+     * Returns how long the job has been in its current stage.
+     *
+     * @return milliseconds since the stage started, or 0 if the job has not started
+     */
+    long getStageMillis() {
+        return (stage == null) ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stageStartedAt);
+    }
+
+    /**
+     * Records how far the picture download has got and, a few times a second, tells the scheduler's listeners.
+     * Called after every block, so it is also where a cancelled download stops.
+     *
+     * @param bytesTransferred the bytes of the file on disk so far
+     * @param totalBytes the complete length of the file, or -1 if it is unknown
+     * @throws InterruptedIOException if the job has been cancelled or has timed out
+     */
+    void transferred(long bytesTransferred, long totalBytes) throws InterruptedIOException {
+        checkCancelled();
+        long now = System.nanoTime();
+        lastProgressAt = now;
+        if (meter == null) {
+            meter = new ThroughputMeter(bytesTransferred, now);
+        } else {
+            meter.sample(bytesTransferred, now);
+        }
+        boolean last = (bytesTransferred == totalBytes);
+        if (progress != null && !last && now - progressReportedAt < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+        progressReportedAt = now;
+        progress = new DownloadProgress(bytesTransferred, totalBytes, meter.getBytesPerSecond(),
+                meter.getEtaMillis(bytesTransferred, totalBytes));
+        scheduler.progressChanged(this, progress);
+    }
+
+    /**
+     * Records that the job has just made progress, which puts off the stall timeout.
+     */
+    void madeProgress() {
+        lastProgressAt = System.nanoTime();
+    }
+
+    /**
+     * Throws if the job has been cancelled or has timed out.
+     *
+     * @throws InterruptedIOException if the job has been cancelled
+     * @throws SocketTimeoutException if the job has timed out
+     */
+    void checkCancelled() throws InterruptedIOException {
+        if (cancelRequested) {
+            throw new InterruptedIOException("Download of " + date + " cancelled");
+        }
+        if (timedOut) {
+            throw new SocketTimeoutException("Download of " + date + " timed out");
+        }
+    }
+}
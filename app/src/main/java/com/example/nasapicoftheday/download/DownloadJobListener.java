@@ -0,0 +1,15 @@
+package com.example.nasapicoftheday.download;
+
+/**
+ * The DownloadJobListener interface is notified when a DownloadJob changes state.
+ *
+ * @author Caitlin Ross
+ */
+public interface DownloadJobListener {
+    /**
+     * Called after a job moves to a new state.
+     *
+     * @param job the job; its getState() returns the new state (or a later one, if it has moved on since)
+     */
+    void onJobStateChanged(DownloadJob job);
+}
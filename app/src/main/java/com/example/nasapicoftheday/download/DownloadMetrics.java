@@ -0,0 +1,37 @@
+package com.example.nasapicoftheday.download;
+
+/**
+ * The DownloadMetrics interface records where downloads spend their time, e.g. to log them or send them to an
+ * analytics service. Its methods are called on the worker threads and must return quickly.
+ *
+ * @author Caitlin Ross
+ */
+public interface DownloadMetrics {
+    /** Records nothing */
+    DownloadMetrics NONE = new DownloadMetrics() {
+        @Override
+        public void onStageFinished(DownloadJob job, DownloadJob.Stage stage, long millis) {
+        }
+
+        @Override
+        public void onProgress(DownloadJob job, DownloadProgress progress) {
+        }
+    };
+
+    /**
+     * Called when a job leaves a stage, whether it moves on to the next one, finishes, fails or is cancelled.
+     *
+     * @param job the job
+     * @param stage the stage it left
+     * @param millis how long it spent in the stage
+     */
+    void onStageFinished(DownloadJob job, DownloadJob.Stage stage, long millis);
+
+    /**
+     * Called with each progress update of a job's picture download, at most a few times a second.
+     *
+     * @param job the job
+     * @param progress the bytes transferred, the length and the transfer rate so far
+     */
+    void onProgress(DownloadJob job, DownloadProgress progress);
+}
@@ -0,0 +1,158 @@
+package com.example.nasapicoftheday.download;
+
+import android.content.Context;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The DownloadPipeline class connects activities to the downloads they start. Downloads run on the shared
+ * DownloadScheduler, which belongs to the application, so a download carries on when its activity is recreated
+ * (e.g. on rotation) and the new activity picks it up instead of starting it again.
+ * An activity attaches an observer for its date while it is visible and detaches it when it stops, so the pipeline
+ * never holds on to an activity that has gone. Attaching replays the job's current state, including a job that
+ * finished while no observer was attached.
+ * Every method must be called on the main thread, and observers are called on the main thread.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadPipeline implements DownloadJobListener {
+    /** Most finished jobs remembered for observers that have not attached yet */
+    private static final int MAX_FINISHED_JOBS = 8;
+
+    /** The shared instance, created the first time a download is started */
+    private static DownloadPipeline instance;
+
+    /** The scheduler the downloads run on */
+    private final DownloadScheduler scheduler;
+    /** The attached observers and the date each one is watching */
+    private final Map<DownloadJobListener, Date> observers = new HashMap<>();
+    /** Recently finished jobs, by NASA epoch day, oldest first */
+    private final LinkedHashMap<Integer, DownloadJob> finishedJobs = new LinkedHashMap<Integer, DownloadJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, DownloadJob> eldest) {
+            return size() > MAX_FINISHED_JOBS;
+        }
+    };
+
+    /**
+     * Constructor, starts listening to the scheduler's jobs on the main thread.
+     *
+     * @param scheduler the scheduler the downloads run on
+     */
+    private DownloadPipeline(DownloadScheduler scheduler) {
+        this.scheduler = scheduler;
+        scheduler.addJobListener(this);
+    }
+
+    /**
+     * Returns the shared pipeline, creating it if necessary.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared DownloadPipeline
+     */
+    public static synchronized DownloadPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadPipeline(DownloadScheduler.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Stops listening to the scheduler and forgets every observer and finished job.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.scheduler.removeJobListener(instance);
+            instance = null;
+        }
+    }
+
+    /**
+     * Starts downloading a day's image for the user, unless it is already downloading or has just finished.
+     *
+     * @param date the NASA date to download
+     * @return the running or recently finished job for the date
+     */
+    public DownloadJob start(Date date) {
+        DownloadJob finished = finishedJobs.get(date.toEpochDay());
+        if (finished != null) {
+            return finished;
+        }
+        return scheduler.schedule(date, DownloadJob.Priority.USER);
+    }
+
+    /**
+     * Attaches an observer to a date's download and tells it the job's current state straight away.
+     * An observer watches one date at a time; attaching it again replaces its date.
+     *
+     * @param date the NASA date to watch
+     * @param observer the observer to notify
+     */
+    public void attach(Date date, DownloadJobListener observer) {
+        observers.put(observer, date);
+        DownloadJob current = scheduler.getJob(date);
+        if (current == null) {
+            current = finishedJobs.get(date.toEpochDay());
+        }
+        if (current != null) {
+            observer.onJobStateChanged(current);
+        }
+    }
+
+    /**
+     * Detaches an observer. It is not called again, even for state changes that are already on their way.
+     *
+     * @param observer the observer to stop notifying
+     */
+    public void detach(DownloadJobListener observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Cancels a date's download, if it has not finished, and forgets its result.
+     *
+     * @param date the NASA date
+     * @return true if a waiting or running job was cancelled
+     */
+    public boolean cancel(Date date) {
+        forget(date);
+        return scheduler.cancel(date);
+    }
+
+    /**
+     * Forgets the result of a date's finished download, once nothing needs it replayed, so the next start of that
+     * date downloads it again.
+     *
+     * @param date the NASA date
+     */
+    public void forget(Date date) {
+        finishedJobs.remove(date.toEpochDay());
+    }
+
+    /**
+     * Remembers finished jobs and passes every state change on to the observers watching its date.
+     *
+     * @param job the job that changed
+     */
+    @Override
+    public void onJobStateChanged(DownloadJob job) {
+        if (job.getState().isFinished() && job.getState() != DownloadJob.State.CANCELLED) {
+            finishedJobs.put(job.getDate().toEpochDay(), job);
+        }
+        DownloadJob current = scheduler.getJob(job.getDate());
+        if (current != null && current != job) {
+            // A cancelled job winding down after its date was started again; its observers now watch the new job
+            return;
+        }
+        // Copy the entries, since an observer may detach itself while it is being notified
+        for (Map.Entry<DownloadJobListener, Date> entry : new HashMap<>(observers).entrySet()) {
+            if (entry.getValue().equals(job.getDate()) && observers.containsKey(entry.getKey())) {
+                entry.getKey().onJobStateChanged(job);
+            }
+        }
+    }
+}
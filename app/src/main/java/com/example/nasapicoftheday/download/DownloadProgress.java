@@ -0,0 +1,72 @@
+package com.example.nasapicoftheday.download;
+
+/**
+ * The DownloadProgress class is a snapshot of how far a picture download has got and how fast it is going.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadProgress {
+    /** Bytes of the file on disk, including any resumed from an earlier attempt */
+    private final long bytesTransferred;
+    /** Complete length of the file, or -1 if it is unknown */
+    private final long totalBytes;
+    /** Smoothed transfer rate, or -1 until there has been enough of the download to measure */
+    private final double bytesPerSecond;
+    /** Estimated time left, or -1 if it cannot be estimated yet */
+    private final long etaMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param bytesTransferred bytes of the file on disk
+     * @param totalBytes complete length of the file, or -1 if it is unknown
+     * @param bytesPerSecond smoothed transfer rate, or -1 if it is not known yet
+     * @param etaMillis estimated time left in milliseconds, or -1 if it is not known
+     */
+    public DownloadProgress(long bytesTransferred, long totalBytes, double bytesPerSecond, long etaMillis) {
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaMillis = etaMillis;
+    }
+
+    /**
+     * Returns the bytes of the file on disk so far.
+     *
+     * @return the bytes transferred, including any resumed from an earlier attempt
+     */
+    public long getBytesTransferred() { return bytesTransferred; }
+
+    /**
+     * Returns the complete length of the file.
+     *
+     * @return the length in bytes, or -1 if the server did not say
+     */
+    public long getTotalBytes() { return totalBytes; }
+
+    /**
+     * Returns the moving average of the transfer rate.
+     *
+     * @return bytes per second, or -1 if it has not been measured yet
+     */
+    public double getBytesPerSecond() { return bytesPerSecond; }
+
+    /**
+     * Returns the estimated time until the download finishes, at the current rate.
+     *
+     * @return milliseconds left, or -1 if the length or the rate is unknown
+     */
+    public long getEtaMillis() { return etaMillis; }
+
+    /**
+     * Returns the part of the file downloaded so far.
+     *
+     * @return a fraction from 0 to 1, or -1 if the length is unknown
+     */
+    public double getFraction() {
+        if (totalBytes <= 0) {
+            return -1;
+        }
+        return Math.min(1.0, (double) bytesTransferred / totalBytes);
+    }
+}
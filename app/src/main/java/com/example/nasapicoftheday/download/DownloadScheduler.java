@@ -0,0 +1,493 @@
+package com.example.nasapicoftheday.download;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.network.ApodMetadata;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The DownloadScheduler class runs image downloads on a fixed pool of worker threads.
+ * Jobs wait in one of two lanes: USER jobs (the day the user is looking at) always start first, and BACKGROUND
+ * jobs (e.g. backfill) may use at most all but one worker, so a user job never waits behind a long backfill.
+ * There is at most one job per NASA date; scheduling a date that is already waiting or running returns that job.
+ * A job that makes no progress for longer than the stall timeout is interrupted and fails with a
+ * SocketTimeoutException. Every stage change and every block of the picture download counts as progress, so a slow
+ * but steady download is never stopped, and a job whose picture is already on disk is never timed out.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadScheduler {
+    /** Number of workers the shared scheduler uses */
+    public static final int DEFAULT_WORKERS = 3;
+    /** How long a job of the shared scheduler may go without progress before it is stopped, in milliseconds */
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** The shared instance, created the first time a download is scheduled */
+    private static DownloadScheduler instance;
+
+    /**
+     * The Work interface performs one job on a worker thread.
+     */
+    interface Work {
+        /**
+         * Downloads and saves the job's image.
+         *
+         * @param job the job to run
+         * @return the saved image, or null if the day has no picture to download
+         * @throws Exception if the download fails or is interrupted
+         */
+        Image run(DownloadJob job) throws Exception;
+    }
+
+    /** Number of worker threads */
+    private final int workers;
+    /** Most workers background jobs may use at once */
+    private final int backgroundLimit;
+    /** What each job does */
+    private final Work work;
+    /** The worker threads */
+    private final ExecutorService pool;
+    /** How long a job may go without progress, in milliseconds, or 0 for no limit */
+    private final long stallTimeoutMillis;
+    /** Stops jobs that stall, or null if there is no limit */
+    private final ScheduledExecutorService timeouts;
+
+    /** Jobs waiting in each lane, oldest first (guarded by this) */
+    private final ArrayDeque<DownloadJob> userQueue = new ArrayDeque<>();
+    private final ArrayDeque<DownloadJob> backgroundQueue = new ArrayDeque<>();
+    /** Every waiting or running job, by NASA epoch day (guarded by this) */
+    private final Map<Integer, DownloadJob> activeJobs = new HashMap<>();
+    /** Number of jobs handed to workers, in total and from the background lane (guarded by this) */
+    private int running = 0;
+    private int runningBackground = 0;
+
+    /** Records where the jobs spend their time */
+    private volatile DownloadMetrics metrics = DownloadMetrics.NONE;
+
+    /** The registered state listeners */
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    /** Used to deliver state changes on the main thread, created when first needed */
+    private Handler mainThread;
+
+    /**
+     * Constructor for a scheduler whose jobs may stall for any length of time.
+     *
+     * @param workers the number of worker threads (at least 1)
+     * @param work what each job does
+     * @throws IllegalArgumentException if workers is less than 1
+     */
+    DownloadScheduler(int workers, Work work) throws IllegalArgumentException {
+        this(workers, 0, work);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param workers the number of worker threads (at least 1)
+     * @param stallTimeoutMillis how long a job may go without progress, in milliseconds, or 0 for no limit
+     * @param work what each job does
+     * @throws IllegalArgumentException if workers is less than 1 or the timeout is negative
+     */
+    DownloadScheduler(int workers, long stallTimeoutMillis, Work work) throws IllegalArgumentException {
+        if (workers < 1 || stallTimeoutMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.workers = workers;
+        // With a single worker the background lane has to share it
+        this.backgroundLimit = Math.max(1, workers - 1);
+        this.work = work;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "DownloadScheduler-" + threadCount.incrementAndGet()));
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        this.timeouts = (stallTimeoutMillis == 0) ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DownloadScheduler-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the shared scheduler, creating it if necessary. Its jobs run the DownloadStages: fetch the day's APOD
+     * entry (unless it was given), download the picture, save the image and read back its saved record.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared DownloadScheduler
+     */
+    public static synchronized DownloadScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadScheduler(DEFAULT_WORKERS, DEFAULT_STALL_TIMEOUT_MILLIS,
+                    new DownloadStages(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the shared scheduler, interrupting running jobs. Waiting jobs are dropped.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * Stops this scheduler's threads, interrupting running jobs. Waiting jobs are dropped.
+     */
+    void stop() {
+        pool.shutdownNow();
+        if (timeouts != null) {
+            timeouts.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedules the download of a day's image, fetching its APOD entry when the job runs.
+     *
+     * @param date the NASA date to download
+     * @param priority the lane to wait in
+     * @return the job for that date (an existing one if the date is already waiting or running)
+     */
+    public DownloadJob schedule(Date date, DownloadJob.Priority priority) {
+        return schedule(date, null, priority);
+    }
+
+    /**
+     * Schedules the download of an APOD entry that has already been fetched (e.g. by ApodClient.fetchRange).
+     *
+     * @param metadata the day's entry
+     * @param priority the lane to wait in
+     * @return the job for that date (an existing one if the date is already waiting or running)
+     */
+    public DownloadJob schedule(ApodMetadata metadata, DownloadJob.Priority priority) {
+        return schedule(metadata.getDate(), metadata, priority);
+    }
+
+    /**
+     * Schedules every entry in a list in the background lane, e.g. the days of a backfill.
+     *
+     * @param entries the entries to download
+     * @return the jobs, in the same order
+     */
+    public List<DownloadJob> scheduleAll(List<ApodMetadata> entries) {
+        List<DownloadJob> jobs = new ArrayList<>(entries.size());
+        for (ApodMetadata metadata : entries) {
+            jobs.add(schedule(metadata, DownloadJob.Priority.BACKGROUND));
+        }
+        return jobs;
+    }
+
+    /**
+     * Returns the waiting or running job for a date.
+     *
+     * @param date the NASA date
+     * @return the job, or null if none is waiting or running
+     */
+    public synchronized DownloadJob getJob(Date date) {
+        return activeJobs.get(date.toEpochDay());
+    }
+
+    /**
+     * Cancels the job for a date. A waiting job is dropped; a running job is interrupted and stops at its next
+     * checkpoint: the next stage, or the next block of its picture download (a blocked network read ends when its
+     * timeout does).
+     *
+     * @param date the NASA date
+     * @return true if a waiting or running job was found
+     */
+    public boolean cancel(Date date) {
+        DownloadJob dropped = null;
+        synchronized (this) {
+            DownloadJob job = activeJobs.get(date.toEpochDay());
+            if (job == null) {
+                return false;
+            }
+            job.cancelRequested = true;
+            if (userQueue.remove(job) || backgroundQueue.remove(job)) {
+                activeJobs.remove(date.toEpochDay());
+                job.setState(DownloadJob.State.CANCELLED, null, null);
+                dropped = job;
+            } else if (job.worker != null) {
+                job.worker.interrupt();
+            }
+        }
+        if (dropped != null) {
+            fire(dropped);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener for job state changes, called on the main thread.
+     *
+     * @param listener the listener to notify
+     */
+    public void addJobListener(DownloadJobListener listener) {
+        synchronized (this) {
+            if (mainThread == null) {
+                mainThread = new Handler(Looper.getMainLooper());
+            }
+        }
+        addJobListener(listener, mainThread::post);
+    }
+
+    /**
+     * Registers a listener for job state changes.
+     *
+     * @param listener the listener to notify
+     * @param executor the executor the listener is called on
+     */
+    public void addJobListener(DownloadJobListener listener, Executor executor) {
+        registrations.add(new Registration(listener, executor));
+    }
+
+    /**
+     * Unregisters a listener. State changes already handed to its executor may still be delivered.
+     *
+     * @param listener the listener to stop notifying
+     */
+    public void removeJobListener(DownloadJobListener listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener == listener) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * Sets the hook that records how long each job spends in each stage and how fast its picture downloads.
+     *
+     * @param metrics the hook, or null to record nothing
+     */
+    public void setMetrics(DownloadMetrics metrics) {
+        this.metrics = (metrics == null) ? DownloadMetrics.NONE : metrics;
+    }
+
+    /**
+     * Adds a job to its lane, or returns the job already waiting or running for the date unless that job has been
+     * cancelled.
+     *
+     * @param date the NASA date
+     * @param metadata the day's entry, or null
+     * @param priority the lane to wait in
+     * @return the job for the date
+     */
+    private DownloadJob schedule(Date date, ApodMetadata metadata, DownloadJob.Priority priority) {
+        DownloadJob job;
+        synchronized (this) {
+            int day = date.toEpochDay();
+            DownloadJob existing = activeJobs.get(day);
+            if (existing != null && !existing.cancelRequested) {
+                // The user is now waiting on a background job, so move it to the front lane
+                if (priority == DownloadJob.Priority.USER && existing.getPriority() == DownloadJob.Priority.BACKGROUND) {
+                    existing.setPriority(DownloadJob.Priority.USER);
+                    if (backgroundQueue.remove(existing)) {
+                        userQueue.add(existing);
+                    }
+                }
+                job = existing;
+            } else {
+                // A cancelled job may still be winding down; it is replaced, not reused
+                job = new DownloadJob(this, date, metadata, priority);
+                activeJobs.put(day, job);
+                (priority == DownloadJob.Priority.USER ? userQueue : backgroundQueue).add(job);
+            }
+        }
+        dispatch();
+        return job;
+    }
+
+    /**
+     * Hands waiting jobs to free workers: user jobs first, then background jobs up to the background limit.
+     */
+    private synchronized void dispatch() {
+        while (running < workers) {
+            DownloadJob next;
+            boolean background;
+            if (!userQueue.isEmpty()) {
+                next = userQueue.poll();
+                background = false;
+            } else if (!backgroundQueue.isEmpty() && runningBackground < backgroundLimit) {
+                next = backgroundQueue.poll();
+                background = true;
+            } else {
+                break;
+            }
+            running++;
+            if (background) {
+                runningBackground++;
+            }
+            DownloadJob started = next;
+            pool.execute(() -> run(started, background));
+        }
+    }
+
+    /**
+     * Runs on a worker thread: performs a job, records how it ended and starts the next waiting job.
+     *
+     * @param job the job to run
+     * @param background true if the job was taken from the background lane
+     */
+    private void run(DownloadJob job, boolean background) {
+        DownloadJob.State outcome = DownloadJob.State.CANCELLED;
+        Image image = null;
+        Exception error = null;
+        try {
+            synchronized (this) {
+                job.worker = Thread.currentThread();
+                job.madeProgress();
+                if (timeouts != null) {
+                    job.stallCheck = timeouts.schedule(() -> checkStalled(job), stallTimeoutMillis,
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+            if (!job.cancelRequested) {
+                job.setState(DownloadJob.State.RUNNING, null, null);
+                fire(job);
+                image = work.run(job);
+                outcome = (image != null) ? DownloadJob.State.SUCCEEDED : DownloadJob.State.SKIPPED;
+            }
+        } catch (Exception e) {
+            if (!job.cancelRequested) {
+                outcome = DownloadJob.State.FAILED;
+                // The interrupt can surface as any exception, so report the timeout itself
+                error = job.timedOut ? new SocketTimeoutException("Download of " + job.getDate() + " timed out") : e;
+            }
+        } finally {
+            if (job.getStage() != null) {
+                metrics.onStageFinished(job, job.getStage(), job.getStageMillis());
+            }
+            synchronized (this) {
+                if (job.stallCheck != null) {
+                    job.stallCheck.cancel(false);
+                    job.stallCheck = null;
+                }
+                job.worker = null;
+                // A cancel or timeout may have interrupted this thread; clear it before the thread takes another job
+                Thread.interrupted();
+                running--;
+                if (background) {
+                    runningBackground--;
+                }
+                // The date may already have a new job, if this one was cancelled and the date scheduled again
+                if (activeJobs.get(job.getDate().toEpochDay()) == job) {
+                    activeJobs.remove(job.getDate().toEpochDay());
+                }
+            }
+            job.setState(outcome, image, error);
+            fire(job);
+            dispatch();
+        }
+    }
+
+    /**
+     * Stops a running job that has made no progress for the stall timeout, or checks again when the timeout
+     * would run out if it has.
+     *
+     * @param job the job
+     */
+    private synchronized void checkStalled(DownloadJob job) {
+        job.stallCheck = null;
+        if (job.worker == null || job.fetched) {
+            return;
+        }
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.lastProgressAt);
+        if (idleMillis < stallTimeoutMillis) {
+            job.stallCheck = timeouts.schedule(() -> checkStalled(job), stallTimeoutMillis - idleMillis,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
+        job.timedOut = true;
+        job.worker.interrupt();
+    }
+
+    /**
+     * Called on a job's worker thread once its picture is on disk: from then on the job is never timed out. If the
+     * stall timeout fired just as the download finished, the timeout and its interrupt are taken back.
+     *
+     * @param job the job
+     */
+    synchronized void fetchFinished(DownloadJob job) {
+        job.fetched = true;
+        if (job.timedOut) {
+            job.timedOut = false;
+            if (!job.cancelRequested) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Records the stage a running job has just left and tells every listener it moved to a new stage.
+     *
+     * @param job the job
+     * @param finished the stage it left, or null if it has just started
+     * @param millis how long it spent in the stage it left
+     */
+    void stageChanged(DownloadJob job, DownloadJob.Stage finished, long millis) {
+        if (finished != null) {
+            metrics.onStageFinished(job, finished, millis);
+        }
+        fire(job);
+    }
+
+    /**
+     * Records a running job's download progress and tells every listener.
+     *
+     * @param job the job
+     * @param progress its latest progress
+     */
+    void progressChanged(DownloadJob job, DownloadProgress progress) {
+        metrics.onProgress(job, progress);
+        fire(job);
+    }
+
+    /**
+     * Notifies every listener that a job changed state.
+     *
+     * @param job the job
+     */
+    private void fire(DownloadJob job) {
+        for (Registration registration : registrations) {
+            registration.executor.execute(() -> registration.listener.onJobStateChanged(job));
+        }
+    }
+
+    /**
+     * A listener and the executor it is called on.
+     */
+    private static class Registration {
+        private final DownloadJobListener listener;
+        private final Executor executor;
+
+        /**
+         * Constructor.
+         *
+         * @param listener the listener to notify
+         * @param executor the executor the listener is called on
+         */
+        Registration(DownloadJobListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+}
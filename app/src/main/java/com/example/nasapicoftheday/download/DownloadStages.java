@@ -0,0 +1,66 @@
+package com.example.nasapicoftheday.download;
+
+import android.content.Context;
+
+import com.example.nasapicoftheday.dao.ImageRepository;
+import com.example.nasapicoftheday.dao.ImageWriteQueue;
+import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.network.ApodMetadata;
+
+/**
+ * The DownloadStages class is the work the shared DownloadScheduler runs for each job, split into the stages of
+ * DownloadJob.Stage. The job's listeners are told as each stage starts, and a cancelled or timed-out job stops
+ * before its next stage.
+ *
+ * @author Caitlin Ross
+ */
+class DownloadStages implements DownloadScheduler.Work {
+    /** The application context */
+    private final Context context;
+    /** Used to read APOD entries and download the pictures */
+    private final ImageDownloader downloader;
+
+    /**
+     * Constructor.
+     *
+     * @param context the application context
+     */
+    DownloadStages(Context context) {
+        this.context = context;
+        this.downloader = new ImageDownloader(context);
+    }
+
+    /**
+     * Runs every stage of a job on the calling worker thread.
+     *
+     * @param job the job to run
+     * @return the saved image, or null if the day's entry is not a picture
+     * @throws Exception if a stage fails, or the job is cancelled or times out
+     */
+    @Override
+    public Image run(DownloadJob job) throws Exception {
+        // Stage 1: read the day's entry, unless the job was scheduled with it
+        job.enterStage(DownloadJob.Stage.METADATA);
+        ApodMetadata metadata = job.getMetadata();
+        if (metadata == null) {
+            metadata = downloader.getApodClient().fetch(job.getDate());
+        }
+        if (!metadata.isImage()) {
+            return null;
+        }
+
+        // Stage 2: copy the picture to the app's files (shared with any other download of the same URL)
+        job.enterStage(DownloadJob.Stage.FETCH);
+        Image image = downloader.download(metadata, job::transferred);
+
+        // Stage 3: save the record; waiting on the write means the image is in the database when the job succeeds
+        job.enterStage(DownloadJob.Stage.PERSIST);
+        ImageWriteQueue.getInstance(context).saveImage(image).get();
+
+        // Stage 4: the repository is updated on the writer thread, so its record is current by now. It is
+        // the one the saved images list shows, and it is there even if the date had already been saved.
+        job.enterStage(DownloadJob.Stage.INDEX);
+        Image indexed = ImageRepository.getInstance(context).getImage(job.getDate());
+        return (indexed != null) ? indexed : image;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.nasapicoftheday.download;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * The DownloadStatistics class is the DownloadMetrics the app installs. It keeps the count, total and longest time
+ * of each stage and the average transfer rate of the picture downloads, and logs every stage that is slow, so it
+ * can be seen where slow downloads spend their time.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadStatistics implements DownloadMetrics {
+    /** Tag of the log messages */
+    private static final String TAG = "DownloadStatistics";
+    /** A stage taking at least this long is logged, in milliseconds */
+    static final long SLOW_STAGE_MILLIS = 5000;
+
+    /** Times each stage has finished, by the stage's ordinal */
+    private final long[] counts = new long[DownloadJob.Stage.values().length];
+    /** Total time spent in each stage, in milliseconds */
+    private final long[] totalMillis = new long[counts.length];
+    /** Longest time spent in each stage, in milliseconds */
+    private final long[] maxMillis = new long[counts.length];
+    /** Sum of the final transfer rates of the picture downloads, in bytes per second */
+    private double totalBytesPerSecond = 0;
+    /** Picture downloads with a measured rate */
+    private long rateCount = 0;
+
+    /**
+     * Records how long a job spent in a stage, and the picture's transfer rate when the stage is FETCH. Logs the
+     * stage if it was slow.
+     *
+     * @param job the job
+     * @param stage the stage it left
+     * @param millis how long it spent in the stage
+     */
+    @Override
+    public void onStageFinished(DownloadJob job, DownloadJob.Stage stage, long millis) {
+        double bytesPerSecond = -1;
+        DownloadProgress progress = job.getProgress();
+        if (stage == DownloadJob.Stage.FETCH && progress != null) {
+            bytesPerSecond = progress.getBytesPerSecond();
+        }
+        synchronized (this) {
+            int i = stage.ordinal();
+            counts[i]++;
+            totalMillis[i] += millis;
+            maxMillis[i] = Math.max(maxMillis[i], millis);
+            if (bytesPerSecond >= 0) {
+                totalBytesPerSecond += bytesPerSecond;
+                rateCount++;
+            }
+        }
+        if (millis >= SLOW_STAGE_MILLIS) {
+            String rate = (bytesPerSecond >= 0) ? String.format(Locale.US, " at %.0f bytes/s", bytesPerSecond) : "";
+            Log.i(TAG, String.format(Locale.US, "%s of %s took %d ms%s", stage, job.getDate(), millis, rate));
+        }
+    }
+
+    /**
+     * Records nothing; the rate a download ends with is read from its job when FETCH finishes.
+     *
+     * @param job the job
+     * @param progress the bytes transferred, the length and the transfer rate so far
+     */
+    @Override
+    public void onProgress(DownloadJob job, DownloadProgress progress) {
+    }
+
+    /**
+     * Returns how many times jobs have left a stage.
+     *
+     * @param stage the stage
+     * @return the count
+     */
+    public synchronized long getCount(DownloadJob.Stage stage) {
+        return counts[stage.ordinal()];
+    }
+
+    /**
+     * Returns the average time jobs have spent in a stage.
+     *
+     * @param stage the stage
+     * @return milliseconds, or 0 if no job has left the stage yet
+     */
+    public synchronized long getAverageMillis(DownloadJob.Stage stage) {
+        int i = stage.ordinal();
+        return (counts[i] == 0) ? 0 : totalMillis[i] / counts[i];
+    }
+
+    /**
+     * Returns the longest time a job has spent in a stage.
+     *
+     * @param stage the stage
+     * @return milliseconds, or 0 if no job has left the stage yet
+     */
+    public synchronized long getMaxMillis(DownloadJob.Stage stage) {
+        return maxMillis[stage.ordinal()];
+    }
+
+    /**
+     * Returns the average of the rates the picture downloads finished at.
+     *
+     * @return bytes per second, or -1 if no download has been measured yet
+     */
+    public synchronized double getAverageBytesPerSecond() {
+        return (rateCount == 0) ? -1 : totalBytesPerSecond / rateCount;
+    }
+}
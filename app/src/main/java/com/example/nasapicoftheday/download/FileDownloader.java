@@ -0,0 +1,329 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.network.HttpClient;
+import com.example.nasapicoftheday.network.Response;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The FileDownloader class copies an HTTP response body straight to a file, byte for byte.
+ * The body is written to a ".part" file next to the target and renamed into place only once it is complete,
+ * so a file with the target's name is always a whole download.
+ * If a download is interrupted, the partial file is kept along with a ".meta" sidecar recording the URL, the
+ * expected length and the server's validator (ETag or Last-Modified). The next download of the same URL asks
+ * for only the missing bytes with a Range request, guarded by If-Range so a changed file is sent whole.
+ *
+ * @author Caitlin Ross
+ */
+public class FileDownloader {
+    /** Suffix of the file a download is written to until it is complete */
+    static final String PARTIAL_SUFFIX = ".part";
+    /** Suffix of the file describing a partial download */
+    static final String META_SUFFIX = ".meta";
+    /** Size of the copy buffer */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Keys used in the sidecar file */
+    private static final String URL_KEY = "url";
+    private static final String LENGTH_KEY = "length";
+    private static final String VALIDATOR_KEY = "validator";
+
+    /** One copy buffer per thread, reused for every download that thread makes */
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /** The client the downloads are made with */
+    private final HttpClient http;
+
+    /**
+     * Constructor.
+     *
+     * @param http the client to download with
+     */
+    public FileDownloader(HttpClient http) {
+        this.http = http;
+    }
+
+    /**
+     * Downloads a URL to a file, unless the file already exists, resuming an earlier partial download if there is one.
+     *
+     * @param url the URL to download
+     * @param target the file to create
+     * @return true if the file was downloaded, false if it already existed
+     * @throws IOException if the download fails; the target is left untouched and what was received is kept
+     */
+    public boolean download(URL url, File target) throws IOException {
+        return download(url, target, null);
+    }
+
+    /**
+     * Downloads a URL to a file, unless the file already exists, resuming an earlier partial download if there is one,
+     * and reports the bytes written as they arrive.
+     *
+     * @param url the URL to download
+     * @param target the file to create
+     * @param listener told how far the download has got, or null
+     * @return true if the file was downloaded, false if it already existed
+     * @throws IOException if the download fails; the target is left untouched and what was received is kept
+     */
+    public boolean download(URL url, File target, ProgressListener listener) throws IOException {
+        if (target.exists()) {
+            return false;
+        }
+        File partial = new File(target.getPath() + PARTIAL_SUFFIX);
+        File meta = new File(partial.getPath() + META_SUFFIX);
+
+        // Resume only a partial download of the same URL that the server can vouch for
+        Properties previous = readMeta(meta);
+        long resumeFrom = 0;
+        long previousLength = -1;
+        String validator = null;
+        if (previous != null && url.toString().equals(previous.getProperty(URL_KEY))
+                && previous.getProperty(VALIDATOR_KEY) != null && partial.exists()) {
+            resumeFrom = partial.length();
+            previousLength = parseLength(previous.getProperty(LENGTH_KEY));
+            validator = previous.getProperty(VALIDATOR_KEY);
+        }
+        if (previousLength >= 0 && resumeFrom >= previousLength) {
+            // Everything arrived last time but the file was never moved into place (or it is too long to trust)
+            if (resumeFrom == previousLength) {
+                return finish(url, partial, meta, target, previousLength);
+            }
+            discard(partial, meta);
+            resumeFrom = 0;
+        }
+
+        Map<String, String> headers = Collections.emptyMap();
+        if (resumeFrom > 0) {
+            headers = new HashMap<>();
+            headers.put("Range", "bytes=" + resumeFrom + "-");
+            headers.put("If-Range", validator);
+        }
+
+        long expectedLength = -1;
+        boolean restart = false;
+        try (Response response = http.download(url, headers)) {
+            int status = response.getStatusCode();
+            boolean append = false;
+            if (resumeFrom > 0 && status == 206 && contentRangeStart(response) == resumeFrom) {
+                // The server is sending the rest of the same file
+                append = true;
+                expectedLength = contentRangeTotal(response);
+                if (expectedLength < 0) {
+                    expectedLength = previousLength;
+                }
+                // Without the length, a body cut short could not be told from a complete file
+                restart = (expectedLength < 0);
+            } else if (resumeFrom > 0 && (status == 206 || status == 416)) {
+                // The partial file does not line up with the file on the server any more
+                restart = true;
+            } else if (status == 200) {
+                // A full download, either fresh or because the server ignored the range or the file changed
+                expectedLength = response.getContentLength();
+                writeMeta(meta, url, expectedLength, validatorOf(response));
+            } else {
+                throw new IOException("Download failed with HTTP " + status);
+            }
+
+            if (!restart) {
+                try (FileOutputStream out = new FileOutputStream(partial, append)) {
+                    copy(response.getBody(), out, append ? resumeFrom : 0, expectedLength, listener);
+                    // Make sure the bytes are on disk before the rename makes the file visible
+                    out.getFD().sync();
+                }
+            }
+        }
+
+        if (restart) {
+            // Start again from the beginning, once the partial response has been closed
+            discard(partial, meta);
+            return download(url, target, listener);
+        }
+        return finish(url, partial, meta, target, expectedLength);
+    }
+
+    /**
+     * Checks a downloaded partial file is complete, then moves it into place and deletes its sidecar.
+     *
+     * @param url the URL that was downloaded
+     * @param partial the partial file
+     * @param meta the sidecar file
+     * @param target the file to create
+     * @param expectedLength the complete length, or -1 if it is unknown
+     * @return true
+     * @throws IOException if the partial file is short or cannot be moved; it is kept so the download can resume
+     */
+    private static boolean finish(URL url, File partial, File meta, File target, long expectedLength)
+            throws IOException {
+        // A connection that closes early can look like the end of the body, so check the length
+        if (expectedLength >= 0 && partial.length() != expectedLength) {
+            throw new IOException("Download of " + url + " ended after " + partial.length()
+                    + " of " + expectedLength + " bytes");
+        }
+        if (!partial.renameTo(target)) {
+            throw new IOException("Could not move " + partial + " to " + target);
+        }
+        meta.delete();
+        return true;
+    }
+
+    /**
+     * Copies a stream to a file using this thread's buffer.
+     *
+     * @param in the stream to read to the end
+     * @param out the file to write to
+     * @param alreadyOnDisk the bytes of the file written by an earlier attempt, which are counted in the progress
+     * @param totalBytes the complete length of the file, or -1 if it is unknown
+     * @param listener told the bytes on disk before the copy and after each block, or null
+     * @return the number of bytes copied
+     * @throws IOException if reading or writing fails
+     */
+    static long copy(InputStream in, FileOutputStream out, long alreadyOnDisk, long totalBytes,
+                     ProgressListener listener) throws IOException {
+        byte[] buffer = BUFFERS.get();
+        long total = 0;
+        int count;
+        if (listener != null) {
+            listener.onProgress(alreadyOnDisk, totalBytes);
+        }
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+            total += count;
+            if (listener != null) {
+                listener.onProgress(alreadyOnDisk + total, totalBytes);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the validator to resume a download with: a strong ETag if the server sent one, otherwise
+     * Last-Modified. Weak ETags cannot be used with If-Range.
+     *
+     * @param response the full response
+     * @return the validator, or null if the download cannot be resumed safely
+     */
+    private static String validatorOf(Response response) {
+        String etag = response.getHeader("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.getHeader("Last-Modified");
+    }
+
+    /**
+     * Returns the first byte position of a 206 response ("Content-Range: bytes first-last/total").
+     *
+     * @param response the partial response
+     * @return the first byte position, or -1 if the header is missing or malformed
+     */
+    private static long contentRangeStart(Response response) {
+        String range = response.getHeader("Content-Range");
+        if (range == null || !range.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = range.indexOf('-');
+        try {
+            return (dash < 0) ? -1 : Long.parseLong(range.substring(6, dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the complete length of the file from a 206 response.
+     *
+     * @param response the partial response
+     * @return the total length, or -1 if the server did not say
+     */
+    private static long contentRangeTotal(Response response) {
+        String range = response.getHeader("Content-Range");
+        int slash = (range == null) ? -1 : range.indexOf('/');
+        try {
+            return (slash < 0) ? -1 : Long.parseLong(range.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a length recorded in a sidecar file.
+     *
+     * @param length the recorded length
+     * @return the length, or -1 if it is missing or unknown
+     */
+    private static long parseLength(String length) {
+        try {
+            return (length == null) ? -1 : Long.parseLong(length);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a partial download's sidecar file.
+     *
+     * @param meta the sidecar file
+     * @return its properties, or null if there is no readable sidecar
+     */
+    private static Properties readMeta(File meta) {
+        if (!meta.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (FileInputStream in = new FileInputStream(meta)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a partial download's sidecar file, before any of the body is written.
+     *
+     * @param meta the sidecar file
+     * @param url the URL being downloaded
+     * @param length the complete length, or -1 if it is unknown
+     * @param validator the server's validator, or null if the download cannot be resumed
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeMeta(File meta, URL url, long length, String validator) throws IOException {
+        if (validator == null) {
+            // Without a validator the partial file cannot be trusted later, so do not record it
+            meta.delete();
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(URL_KEY, url.toString());
+        properties.setProperty(LENGTH_KEY, Long.toString(length));
+        properties.setProperty(VALIDATOR_KEY, validator);
+        try (FileOutputStream out = new FileOutputStream(meta)) {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * Deletes a partial download and its sidecar.
+     *
+     * @param partial the partial file
+     * @param meta the sidecar file
+     */
+    private static void discard(File partial, File meta) {
+        partial.delete();
+        meta.delete();
+    }
+}
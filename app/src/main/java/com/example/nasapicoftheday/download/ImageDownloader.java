@@ -0,0 +1,177 @@
+package com.example.nasapicoftheday.download;
+
+import android.content.Context;
+
+import com.example.nasapicoftheday.dao.ImageDao;
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+import com.example.nasapicoftheday.datamodel.DateSet;
+import com.example.nasapicoftheday.datamodel.Image;
+import com.example.nasapicoftheday.images.ThumbnailStore;
+import com.example.nasapicoftheday.network.ApodClient;
+import com.example.nasapicoftheday.network.ApodMetadata;
+import com.example.nasapicoftheday.network.HttpClient;
+import com.example.nasapicoftheday.network.SingleFlight;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ImageDownloader class turns APOD entries into saved images: it downloads each picture to the app's files
+ * and builds the Image record for it. Runs on a background thread.
+ *
+ * @author Caitlin Ross
+ */
+public class ImageDownloader {
+    /** Picture downloads in flight across every downloader, by URL, so two callers never write the same file at once */
+    private static final SingleFlight<String, Boolean> FILE_DOWNLOADS = new SingleFlight<>();
+
+    /** The context used to write the image files and find the saved dates */
+    private final Context context;
+    /** The client used to read APOD entries */
+    private final ApodClient apod;
+    /** Used to copy the pictures to disk */
+    private final FileDownloader files;
+
+    /**
+     * Constructor, uses the shared HttpClient.
+     *
+     * @param context the parent context
+     */
+    public ImageDownloader(Context context) {
+        this(context, new ApodClient(), HttpClient.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context the parent context
+     * @param apod the client used to read APOD entries
+     * @param http the client used to download the pictures
+     */
+    public ImageDownloader(Context context, ApodClient apod, HttpClient http) {
+        this.context = context;
+        this.apod = apod;
+        this.files = new FileDownloader(http);
+    }
+
+    /**
+     * Returns the client used to read APOD entries.
+     *
+     * @return the ApodClient
+     */
+    public ApodClient getApodClient() {
+        return apod;
+    }
+
+    /**
+     * Downloads the picture for an entry (unless it is already on disk) and builds its Image. Does not save it.
+     * If the same picture is already being downloaded, waits for that download instead of starting another.
+     *
+     * @param metadata the entry to download
+     * @return the new Image, or null if the entry is not a picture
+     * @throws IOException if the download or the file write fails
+     */
+    public Image download(ApodMetadata metadata) throws IOException {
+        return download(metadata, null);
+    }
+
+    /**
+     * Downloads the picture for an entry (unless it is already on disk) and builds its Image, reporting the bytes
+     * written as they arrive. Does not save it. If the same picture is already being downloaded, waits for that
+     * download instead of starting another, and only the caller that started it hears its progress.
+     *
+     * @param metadata the entry to download
+     * @param listener told how far the download has got, or null
+     * @return the new Image, or null if the entry is not a picture
+     * @throws IOException if the download or the file write fails
+     */
+    public Image download(ApodMetadata metadata, ProgressListener listener) throws IOException {
+        if (!metadata.isImage()) {
+            return null;
+        }
+        String imageFile = fileNameFor(metadata);
+
+        // Copy the original bytes to disk, unless the file was already downloaded; decoding is left to display time
+        URL url = new URL(metadata.getUrl());
+        File target = context.getFileStreamPath(imageFile);
+        FILE_DOWNLOADS.run(metadata.getUrl(), () -> files.download(url, target, listener));
+
+        // Make the list thumbnail now, while the picture is fresh; if it fails the list makes it when first shown
+        try {
+            ThumbnailStore.getInstance(context).getThumbnail(imageFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return new Image(null, metadata.getTitle(), metadata.getExplanation(), new Date(), metadata.getDate(), imageFile);
+    }
+
+    /**
+     * Schedules the download of every picture in a range that is not saved yet, in the shared DownloadScheduler's
+     * background lane. Each job saves its image through the ImageWriteQueue as soon as its picture is on disk.
+     * Entries are read one request's worth of days at a time, and only for the span of days still missing in each,
+     * so a range with a few gaps costs a few small requests; each batch of jobs starts while the next is read.
+     * Days whose entry is not a picture are skipped.
+     *
+     * @param range the days to fill in
+     * @return the jobs scheduled, in date order
+     * @throws IOException if the APOD entries could not be read (jobs already scheduled keep running)
+     */
+    public List<DownloadJob> backfill(DateRange range) throws IOException {
+        DateSet missing = new ImageDao().findUnsavedDates(range, context);
+        if (missing.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        DownloadScheduler scheduler = DownloadScheduler.getInstance(context);
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (DateRange chunk : range.intersectArchive().chunks(ApodClient.MAX_DAYS_PER_REQUEST)) {
+            DateRange span = missingSpan(missing, chunk);
+            if (span.isEmpty()) {
+                continue;
+            }
+            List<ApodMetadata> entries = new ArrayList<>();
+            for (ApodMetadata metadata : apod.fetchRange(span)) {
+                if (missing.contains(metadata.getDate()) && metadata.isImage()) {
+                    entries.add(metadata);
+                }
+            }
+            jobs.addAll(scheduler.scheduleAll(entries));
+        }
+        return jobs;
+    }
+
+    /**
+     * Returns the smallest range covering the days of a chunk that are missing.
+     *
+     * @param missing the missing days
+     * @param chunk the days to look in
+     * @return the span from the first to the last missing day of the chunk, or an empty range if none is missing
+     */
+    static DateRange missingSpan(DateSet missing, DateRange chunk) {
+        int first = chunk.getFirstEpochDay();
+        int last = chunk.getLastEpochDay();
+        while (first <= last && !missing.contains(first)) {
+            first++;
+        }
+        while (last >= first && !missing.contains(last)) {
+            last--;
+        }
+        return (first <= last) ? DateRange.ofEpochDays(first, last) : DateRange.EMPTY;
+    }
+
+    /**
+     * Returns the name of the file an entry's picture is stored in.
+     *
+     * @param metadata the entry
+     * @return the file name
+     */
+    static String fileNameFor(ApodMetadata metadata) {
+        return metadata.getTitle() + ".jpeg";
+    }
+}
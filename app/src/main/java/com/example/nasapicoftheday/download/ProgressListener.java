@@ -0,0 +1,20 @@
+package com.example.nasapicoftheday.download;
+
+import java.io.IOException;
+
+/**
+ * The ProgressListener interface is told how far a file download has got, each time a block of the body is written.
+ *
+ * @author Caitlin Ross
+ */
+public interface ProgressListener {
+    /**
+     * Called on the downloading thread once before the body is read, then after each block is written.
+     * Throwing stops the download; what has been written so far is kept so it can be resumed.
+     *
+     * @param bytesTransferred the bytes of the file on disk so far, including any resumed from an earlier attempt
+     * @param totalBytes the complete length of the file, or -1 if the server did not say
+     * @throws IOException to stop the download, e.g. an InterruptedIOException when it has been cancelled
+     */
+    void onProgress(long bytesTransferred, long totalBytes) throws IOException;
+}
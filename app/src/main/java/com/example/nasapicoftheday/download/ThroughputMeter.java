@@ -0,0 +1,80 @@
+package com.example.nasapicoftheday.download;
+
+/**
+ * The ThroughputMeter class measures the transfer rate of a download as an exponential moving average, so the rate
+ * and the time left follow changes in speed without jumping around with every block.
+ * Samples closer together than MIN_SAMPLE_NANOS are folded into the next one, and the meter starts over when the
+ * download does.
+ *
+ * @author Caitlin Ross
+ */
+public class ThroughputMeter {
+    /** Weight of the newest sample in the average (the rest is the previous average) */
+    static final double SMOOTHING = 0.3;
+    /** Shortest interval a sample is measured over, in nanoseconds */
+    static final long MIN_SAMPLE_NANOS = 200_000_000L;
+
+    /** Byte count and time at the end of the last sample */
+    private long lastBytes;
+    private long lastNanos;
+    /** The moving average, or -1 before the first sample */
+    private double bytesPerSecond = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param startBytes the byte count the download starts from (non-zero when it is resumed)
+     * @param startNanos the time it starts, from System.nanoTime()
+     */
+    public ThroughputMeter(long startBytes, long startNanos) {
+        this.lastBytes = startBytes;
+        this.lastNanos = startNanos;
+    }
+
+    /**
+     * Records how many bytes have been transferred by a given time. A count lower than the last one means the
+     * download has started again from the beginning, so the rate measured so far is dropped.
+     *
+     * @param bytes the byte count so far
+     * @param nanos the time, from System.nanoTime()
+     */
+    public void sample(long bytes, long nanos) {
+        if (bytes < lastBytes) {
+            lastBytes = bytes;
+            lastNanos = nanos;
+            bytesPerSecond = -1;
+            return;
+        }
+        long elapsed = nanos - lastNanos;
+        if (elapsed < MIN_SAMPLE_NANOS) {
+            return;
+        }
+        double rate = (bytes - lastBytes) * 1e9 / elapsed;
+        bytesPerSecond = (bytesPerSecond < 0) ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+        lastBytes = bytes;
+        lastNanos = nanos;
+    }
+
+    /**
+     * Returns the moving average of the transfer rate.
+     *
+     * @return bytes per second, or -1 until a full sample has been measured
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Estimates the time left at the current rate.
+     *
+     * @param bytes the byte count so far
+     * @param totalBytes the complete length, or -1 if it is unknown
+     * @return milliseconds left, or -1 if the length or the rate is unknown
+     */
+    public long getEtaMillis(long bytes, long totalBytes) {
+        if (totalBytes < 0 || bytesPerSecond <= 0) {
+            return -1;
+        }
+        return (long) (Math.max(0, totalBytes - bytes) * 1000 / bytesPerSecond);
+    }
+}
@@ -19,7 +19,8 @@ import android.widget.TextView;
 
 import com.example.nasapicoftheday.R;
 import com.example.nasapicoftheday.activities.SavedImages;
-import com.example.nasapicoftheday.dao.ImageDao;
+import com.example.nasapicoftheday.dao.ImageRepository;
+import com.example.nasapicoftheday.dao.ImageWriteQueue;
 import com.example.nasapicoftheday.datamodel.Image;
 import com.google.android.material.snackbar.Snackbar;
 
@@ -49,14 +50,19 @@ public class ViewImage extends Fragment {
             Intent backToSavedImages = new Intent(parentActivity.getBaseContext(), SavedImages.class);
             parentActivity.startActivity(backToSavedImages);
         }
-        Image imageObject = new Image(getArguments());
+        // Prefer the repository's copy, which reflects any rename made since the arguments were built
+        Image fromArguments = new Image(getArguments());
+        Image saved = ImageRepository.getInstance(parentActivity).getImage(fromArguments.getNasaDate());
+        Image imageObject = (saved != null) ? saved : fromArguments;
 
         // Inflate the layout for this fragment
         View result = inflater.inflate(R.layout.fragment_image, container, false);
 
         // Initialize the widgets
         ImageView imageView = result.findViewById(R.id.fragment_view_image);
-        imageView.setImageBitmap(imageObject.loadImage(parentActivity));
+        // The image fills the screen's width, so there is no need to decode it any larger than that
+        int width = getResources().getDisplayMetrics().widthPixels;
+        imageView.setImageBitmap(imageObject.loadImage(parentActivity, width, width));
 
         TextView imageName = result.findViewById(R.id.fragment_image_name);
         imageName.setText(imageObject.getName());
@@ -70,8 +76,7 @@ public class ViewImage extends Fragment {
             alertDialogBuilder.setMessage(R.string.fragment_edit_dialog_message);
             alertDialogBuilder.setPositiveButton(R.string.fragment_edit_dialog_yes, (c, arg) -> {
                 String newName = newNameField.getText().toString();
-                ImageDao dao = new ImageDao();
-                dao.updateImage(imageObject, newName, parentActivity);
+                ImageWriteQueue.getInstance(parentActivity).updateImage(imageObject, newName);
                 imageName.setText(newName);
             });
             alertDialogBuilder.setNegativeButton(R.string.fragment_edit_dialog_no, (c, arg) -> { });
@@ -82,11 +87,10 @@ public class ViewImage extends Fragment {
         Button deleteButton = result.findViewById(R.id.fragment_delete_button);
         deleteButton.setOnClickListener( (click) -> {
             // Delete the image
-            ImageDao dao = new ImageDao();
-            dao.deleteImage(imageObject, parentActivity);
+            ImageWriteQueue.getInstance(parentActivity).deleteImage(imageObject);
             // Go back to the Saved Images activity
             Intent backToSavedImages = new Intent(parentActivity.getBaseContext(), SavedImages.class);
-            backToSavedImages.putExtra(IMAGE_KEY, imageObject.getBundle());
+            backToSavedImages.putExtra(IMAGE_KEY, imageObject.getNasaDate().getBundle());
             parentActivity.startActivity(backToSavedImages);
             });
 
@@ -0,0 +1,219 @@
+package com.example.nasapicoftheday.images;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The BitmapCache class keeps recently shown pictures decoded in memory, shared by every screen, so scrolling back
+ * or returning to an image does not decode it again. Each picture is decoded at no more than the size it is shown
+ * at, and entries are keyed by file name and that target size.
+ * The cache holds an eighth of the app's memory class, counted in bytes, and evicts the least recently used
+ * pictures beyond that. It shrinks or empties itself when the system asks the app to trim its memory.
+ *
+ * @author Caitlin Ross
+ */
+public class BitmapCache {
+    /** Part of the app's memory class the cache may use (1/8) */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    /** The shared instance, created the first time a picture is loaded */
+    private static BitmapCache instance;
+
+    /** The application context, used to find the image files */
+    private final Context context;
+    /** The decoded pictures, sized by their allocation in bytes */
+    private final LruCache<String, Bitmap> bitmaps;
+
+    /**
+     * Constructor.
+     *
+     * @param context the application context
+     * @param maxBytes the most memory the cached pictures may use
+     */
+    BitmapCache(Context context, int maxBytes) {
+        this.context = context;
+        this.bitmaps = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the shared cache, creating it if necessary with a size based on the device's memory class.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared BitmapCache
+     */
+    public static synchronized BitmapCache getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+            instance = new BitmapCache(appContext, maxBytes);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a picture decoded to fit a target size, from the cache if it is there.
+     * The picture is scaled down by a power of two, so it is never smaller than the target in both dimensions
+     * unless the file itself is.
+     *
+     * @param fileName the name of the image file in the app's files
+     * @param targetWidth the width it is shown at, in pixels, or 0 for full size
+     * @param targetHeight the height it is shown at, in pixels, or 0 for full size
+     * @return the picture, or null if the file is missing or cannot be decoded
+     */
+    public Bitmap get(String fileName, int targetWidth, int targetHeight) {
+        String key = keyFor(fileName, targetWidth, targetHeight);
+        Bitmap cached = bitmaps.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Bitmap decoded = decode(fileName, targetWidth, targetHeight);
+        if (decoded != null) {
+            bitmaps.put(key, decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns a picture's thumbnail from the ThumbnailStore, from the cache if it is there. Makes the thumbnail first
+     * if the picture does not have one yet, which decodes the picture once, so call it on a background thread.
+     *
+     * @param fileName the name of the picture's file in the app's files
+     * @return the thumbnail, or null if the picture is missing or cannot be decoded
+     */
+    public Bitmap getThumbnail(String fileName) {
+        String key = thumbnailKeyFor(fileName);
+        Bitmap cached = bitmaps.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            File thumbnail = ThumbnailStore.getInstance(context).getThumbnail(fileName);
+            Bitmap decoded = BitmapFactory.decodeFile(thumbnail.getPath());
+            if (decoded != null) {
+                bitmaps.put(key, decoded);
+            }
+            return decoded;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns a picture only if it is already in the cache, e.g. to show it without waiting for a decode.
+     *
+     * @param fileName the name of the image file
+     * @param targetWidth the width it is shown at, in pixels, or 0 for full size
+     * @param targetHeight the height it is shown at, in pixels, or 0 for full size
+     * @return the cached picture, or null
+     */
+    public Bitmap peek(String fileName, int targetWidth, int targetHeight) {
+        return bitmaps.get(keyFor(fileName, targetWidth, targetHeight));
+    }
+
+    /**
+     * Returns a picture's thumbnail only if it is already in the cache, so it can be shown without waiting.
+     *
+     * @param fileName the name of the picture's file
+     * @return the cached thumbnail, or null
+     */
+    public Bitmap peekThumbnail(String fileName) {
+        return bitmaps.get(thumbnailKeyFor(fileName));
+    }
+
+    /**
+     * Frees memory in proportion to how urgently the system needs it.
+     *
+     * @param level the level passed to onTrimMemory
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // The process is likely to be killed, or everything else is being squeezed out
+            bitmaps.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            bitmaps.trimToSize(bitmaps.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Removes every picture from the cache.
+     */
+    public void clear() {
+        bitmaps.evictAll();
+    }
+
+    /**
+     * Decodes a picture, scaled down to fit a target size.
+     *
+     * @param fileName the name of the image file
+     * @param targetWidth the target width, or 0 for full size
+     * @param targetHeight the target height, or 0 for full size
+     * @return the picture, or null if the file is missing or cannot be decoded
+     */
+    private Bitmap decode(String fileName, int targetWidth, int targetHeight) {
+        String path = context.getFileStreamPath(fileName).getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (targetWidth > 0 && targetHeight > 0) {
+            // Read only the dimensions first, to choose how far to scale down while decoding
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            options.inSampleSize = sampleSizeFor(options.outWidth, options.outHeight, targetWidth, targetHeight);
+            options.inJustDecodeBounds = false;
+        }
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    /**
+     * Returns the largest power of two a picture can be scaled down by and still cover a target size.
+     *
+     * @param width the picture's width
+     * @param height the picture's height
+     * @param targetWidth the target width
+     * @param targetHeight the target height
+     * @return the sample size to decode with (1 for full size)
+     */
+    static int sampleSizeFor(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Returns the cache key for a picture's thumbnail.
+     *
+     * @param fileName the name of the picture's file
+     * @return the key
+     */
+    private static String thumbnailKeyFor(String fileName) {
+        return fileName + "@thumbnail";
+    }
+
+    /**
+     * Returns the cache key for a picture at a target size.
+     *
+     * @param fileName the name of the image file
+     * @param targetWidth the target width
+     * @param targetHeight the target height
+     * @return the key
+     */
+    private static String keyFor(String fileName, int targetWidth, int targetHeight) {
+        return fileName + '@' + targetWidth + 'x' + targetHeight;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.nasapicoftheday.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ImageLoader class shows thumbnails in list rows without decoding on the main thread. A thumbnail already in
+ * the BitmapCache is shown at once; any other is decoded (and made first, if need be) on a small pool of background
+ * threads and shown when it is ready.
+ * Each request is tied to the ImageView it is for. When a recycled row asks for a different picture, the view's
+ * previous request is cancelled if it has not started, and its result is ignored if it has. Rows the user has just
+ * scrolled to are decoded first, then the newest prefetches of rows just outside the screen.
+ * Every public method must be called on the main thread.
+ *
+ * @author Caitlin Ross
+ */
+public class ImageLoader {
+    /** Threads decoding thumbnails; thumbnails are small, so more would mostly compete with the UI for the CPU */
+    private static final int THREADS = 2;
+    /** How long an idle thread is kept, in seconds */
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    /**
+     * Order the queued requests run in: requests for a view before prefetches, and within each, the newest first,
+     * since it is the nearest to where the user has scrolled.
+     */
+    private static final Comparator<Runnable> ORDER = new Comparator<Runnable>() {
+        @Override
+        public int compare(Runnable a, Runnable b) {
+            Request first = (Request) a;
+            Request second = (Request) b;
+            if (first.prefetch != second.prefetch) {
+                return first.prefetch ? 1 : -1;
+            }
+            return Integer.compare(second.sequence, first.sequence);
+        }
+    };
+
+    /** The shared instance, created the first time a thumbnail is shown */
+    private static ImageLoader instance;
+
+    /** Where decoded thumbnails are kept */
+    private final BitmapCache cache;
+    /** The background threads */
+    private final ThreadPoolExecutor pool;
+    /** Used to show finished thumbnails on the main thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /** Numbers the requests in the order they were made */
+    private final AtomicInteger sequence = new AtomicInteger();
+    /** The latest request for each view; weak so a view that has gone is not kept (main thread only) */
+    private final Map<ImageView, Request> viewRequests = new WeakHashMap<>();
+    /** The queued or running prefetches, by file name (main thread only) */
+    private final Map<String, Request> prefetches = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param cache where decoded thumbnails are kept
+     */
+    ImageLoader(BitmapCache cache) {
+        this.cache = cache;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(16, ORDER), r -> {
+                    Thread thread = new Thread(r, "ImageLoader-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the shared loader, creating it if necessary.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared ImageLoader
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageLoader(BitmapCache.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Shows a picture's thumbnail in a view: at once if it is in the cache, otherwise blank until it has been
+     * decoded. Replaces any earlier request for the view.
+     *
+     * @param view the view to show the thumbnail in
+     * @param fileName the name of the picture's file
+     */
+    public void loadThumbnail(ImageView view, String fileName) {
+        Request previous = viewRequests.get(view);
+        if (previous != null && previous.fileName.equals(fileName)) {
+            // Re-bound to the same picture; the request already made will show it
+            return;
+        }
+        cancel(view);
+
+        Bitmap cached = cache.peekThumbnail(fileName);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        // Clear the picture the recycled row was showing
+        view.setImageDrawable(null);
+        Request request = new Request(fileName, view);
+        viewRequests.put(view, request);
+        pool.execute(request);
+    }
+
+    /**
+     * Cancels the request for a view, if there is one. A request that has not started is dropped, and the result
+     * of one that has is not shown.
+     *
+     * @param view the view
+     */
+    public void cancel(ImageView view) {
+        Request request = viewRequests.remove(view);
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Decodes thumbnails into the cache ahead of their rows being shown. Replaces the earlier prefetches: any of
+     * them not in the new list and not started yet are dropped, so only the rows near the screen are prefetched.
+     *
+     * @param fileNames the names of the pictures' files, nearest to the screen first
+     */
+    public void prefetch(List<String> fileNames) {
+        Map<String, Request> kept = new HashMap<>();
+        // Queued from the farthest in, so the nearest is the newest and decoded first
+        for (int i = fileNames.size() - 1; i >= 0; i--) {
+            String fileName = fileNames.get(i);
+            Request request = prefetches.remove(fileName);
+            if (request == null && cache.peekThumbnail(fileName) == null) {
+                request = new Request(fileName, null);
+                pool.execute(request);
+            }
+            if (request != null) {
+                kept.put(fileName, request);
+            }
+        }
+        for (Request stale : new ArrayList<>(prefetches.values())) {
+            stale.cancel();
+        }
+        prefetches.clear();
+        prefetches.putAll(kept);
+    }
+
+    /**
+     * Shows a finished thumbnail, if its request is still the latest one for its view. Runs on the main thread.
+     *
+     * @param request the finished request
+     * @param thumbnail the thumbnail, or null if it could not be made
+     */
+    private void finished(Request request, Bitmap thumbnail) {
+        if (request.prefetch) {
+            if (prefetches.get(request.fileName) == request) {
+                prefetches.remove(request.fileName);
+            }
+            return;
+        }
+        ImageView view = request.view.get();
+        if (view == null || request.cancelled || viewRequests.get(view) != request) {
+            // The row has been recycled for another picture, or has gone
+            return;
+        }
+        viewRequests.remove(view);
+        view.setImageBitmap(thumbnail);
+    }
+
+    /**
+     * A thumbnail to decode, for a view or as a prefetch.
+     */
+    private class Request implements Runnable {
+        /** The name of the picture's file */
+        final String fileName;
+        /** The view to show the thumbnail in; empty for a prefetch */
+        final WeakReference<ImageView> view;
+        /** Whether this is a prefetch rather than for a view */
+        final boolean prefetch;
+        /** When the request was made, relative to the others */
+        final int sequence;
+        /** Set once the result is no longer wanted */
+        volatile boolean cancelled = false;
+
+        /**
+         * Constructor.
+         *
+         * @param fileName the name of the picture's file
+         * @param view the view to show the thumbnail in, or null for a prefetch
+         */
+        Request(String fileName, ImageView view) {
+            this.fileName = fileName;
+            this.view = new WeakReference<>(view);
+            this.prefetch = (view == null);
+            this.sequence = ImageLoader.this.sequence.incrementAndGet();
+        }
+
+        /**
+         * Drops the request from the queue if it has not started, and marks its result as unwanted.
+         */
+        void cancel() {
+            cancelled = true;
+            pool.remove(this);
+        }
+
+        /**
+         * Decodes the thumbnail, making it first if the picture has none, then hands it to the main thread.
+         */
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Bitmap thumbnail = cache.getThumbnail(fileName);
+            mainHandler.post(() -> finished(this, thumbnail));
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.nasapicoftheday.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.example.nasapicoftheday.network.SingleFlight;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ThumbnailStore class keeps small JPEG copies of the saved pictures in the app's cache directory, so the saved
+ * images list never has to decode a full-size picture.
+ * A thumbnail is made when a picture is downloaded, or the first time it is asked for (for pictures saved before
+ * thumbnails existed). The store is capped in bytes; the least recently used thumbnails are deleted beyond that,
+ * and can always be made again from their picture.
+ *
+ * @author Caitlin Ross
+ */
+public class ThumbnailStore {
+    /** Longest side of a thumbnail, in pixels */
+    public static final int THUMBNAIL_SIZE = 160;
+    /** Most space the thumbnails may use */
+    static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    /** Name of the store's directory in the cache directory */
+    private static final String DIRECTORY = "thumbnails";
+    /** JPEG quality the thumbnails are written at */
+    private static final int JPEG_QUALITY = 85;
+
+    /** The shared instance, created the first time a thumbnail is needed */
+    private static ThumbnailStore instance;
+
+    /** Thumbnails being made, by picture file name, so two callers never make the same one at once */
+    private final SingleFlight<String, File> generations = new SingleFlight<>();
+
+    /** The application context, used to find the pictures */
+    private final Context context;
+    /** Where the thumbnails are kept */
+    private final File directory;
+    /** Most space the thumbnails may use */
+    private final long maxBytes;
+    /** Size of each thumbnail by file name, least recently used first, or null until read from disk (guarded by this) */
+    private LinkedHashMap<String, Long> entries;
+    /** Total size of the thumbnails (guarded by this) */
+    private long totalBytes = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param context the application context
+     * @param directory where the thumbnails are kept
+     * @param maxBytes most space the thumbnails may use
+     */
+    ThumbnailStore(Context context, File directory, long maxBytes) {
+        this.context = context;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the shared store, creating it if necessary.
+     *
+     * @param context any context; only its application context is kept
+     * @return the shared ThumbnailStore
+     */
+    public static synchronized ThumbnailStore getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ThumbnailStore(appContext, new File(appContext.getCacheDir(), DIRECTORY), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the thumbnail of a picture, making it first if there is none. Runs on a background thread.
+     *
+     * @param fileName the name of the picture's file in the app's files
+     * @return the thumbnail's file
+     * @throws IOException if the picture cannot be read or the thumbnail cannot be written
+     */
+    public File getThumbnail(String fileName) throws IOException {
+        File thumbnail = fileFor(fileName);
+        if (thumbnail.exists()) {
+            touched(fileName, thumbnail);
+            return thumbnail;
+        }
+        return generations.run(fileName, () -> generate(fileName));
+    }
+
+    /**
+     * Deletes the thumbnail of a picture, e.g. once the picture itself has been deleted.
+     *
+     * @param fileName the name of the picture's file
+     */
+    public synchronized void remove(String fileName) {
+        loadEntries();
+        Long size = entries.remove(fileName);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        fileFor(fileName).delete();
+    }
+
+    /**
+     * Returns the file a picture's thumbnail is kept in.
+     *
+     * @param fileName the name of the picture's file
+     * @return the thumbnail's file, which may not exist
+     */
+    File fileFor(String fileName) {
+        return new File(directory, fileName);
+    }
+
+    /**
+     * Makes a picture's thumbnail: decodes the picture scaled down to about the thumbnail size, scales it to fit
+     * exactly, and writes it to a temporary file that is renamed into place.
+     *
+     * @param fileName the name of the picture's file
+     * @return the thumbnail's file
+     * @throws IOException if the picture cannot be read or the thumbnail cannot be written
+     */
+    private File generate(String fileName) throws IOException {
+        File thumbnail = fileFor(fileName);
+        if (thumbnail.exists()) {
+            // Made by another caller between the check and the call
+            return thumbnail;
+        }
+        String path = context.getFileStreamPath(fileName).getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Cannot read " + fileName);
+        }
+        options.inSampleSize = BitmapCache.sampleSizeFor(options.outWidth, options.outHeight,
+                THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        options.inJustDecodeBounds = false;
+        Bitmap decoded = BitmapFactory.decodeFile(path, options);
+        if (decoded == null) {
+            throw new IOException("Cannot decode " + fileName);
+        }
+
+        // Fit the longest side to the thumbnail size
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(decoded.getWidth(), decoded.getHeight()));
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File temporary = new File(directory, fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } finally {
+            if (scaled != decoded) {
+                scaled.recycle();
+            }
+            decoded.recycle();
+        }
+        if (!temporary.renameTo(thumbnail)) {
+            temporary.delete();
+            throw new IOException("Could not move " + temporary + " to " + thumbnail);
+        }
+        added(fileName, thumbnail.length());
+        return thumbnail;
+    }
+
+    /**
+     * Marks a thumbnail as just used, in memory and in its modification time so the order survives a restart.
+     *
+     * @param fileName the name of the picture's file
+     * @param thumbnail the thumbnail's file
+     */
+    private synchronized void touched(String fileName, File thumbnail) {
+        loadEntries();
+        Long size = entries.remove(fileName);
+        entries.put(fileName, (size != null) ? size : thumbnail.length());
+        if (size == null) {
+            totalBytes += thumbnail.length();
+        }
+        thumbnail.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a new thumbnail, then deletes the least recently used ones until the store is under its cap.
+     *
+     * @param fileName the name of the picture's file
+     * @param bytes the thumbnail's size
+     */
+    synchronized void added(String fileName, long bytes) {
+        loadEntries();
+        Long previous = entries.remove(fileName);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        entries.put(fileName, bytes);
+        totalBytes += bytes;
+
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entry.getKey().equals(fileName)) {
+                // Never evict the thumbnail that was just made
+                continue;
+            }
+            fileFor(entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Returns the total size of the thumbnails.
+     *
+     * @return the size in bytes
+     */
+    synchronized long getTotalBytes() {
+        loadEntries();
+        return totalBytes;
+    }
+
+    /**
+     * Reads the thumbnails already on disk the first time the store is used, oldest first. Temporary files are
+     * skipped; one left by an interrupted write is overwritten when that thumbnail is made again.
+     */
+    private void loadEntries() {
+        if (entries != null) {
+            return;
+        }
+        entries = new LinkedHashMap<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> thumbnails = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(thumbnails, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : thumbnails) {
+            if (file.getName().endsWith(".tmp")) {
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+    }
+}
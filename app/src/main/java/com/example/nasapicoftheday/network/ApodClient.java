@@ -0,0 +1,133 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ApodClient class reads entries from NASA's Astronomy Picture of the Day API, either one day at a time or
+ * a whole range of days per request.
+ *
+ * @author Caitlin Ross
+ */
+public class ApodClient {
+    /** The APOD endpoint, with the app's API key */
+    private static final String API_URL =
+            "https://api.nasa.gov/planetary/apod?api_key=CD2JkCnbAMdQpZ4O3a0vxBrnRfpIQVJn4fGUp1Sz";
+    /** Most days asked for in one range request, to keep each response a reasonable size */
+    public static final int MAX_DAYS_PER_REQUEST = 100;
+
+    /** Single-day requests in flight across every client, so callers asking for the same day share one request */
+    private static final SingleFlight<Date, ApodMetadata> DAY_REQUESTS = new SingleFlight<>();
+
+    /** The client the requests are sent with */
+    private final HttpClient http;
+    /** The endpoint the requests are sent to, with the API key */
+    private final String apiUrl;
+
+    /**
+     * No-arg constructor uses the shared HttpClient.
+     */
+    public ApodClient() {
+        this(HttpClient.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param http the client to send requests with
+     */
+    public ApodClient(HttpClient http) {
+        this(http, API_URL);
+    }
+
+    /**
+     * Constructor for tests, sending the requests to another endpoint.
+     *
+     * @param http the client to send requests with
+     * @param apiUrl the endpoint, with a query string the date parameters can be added to
+     */
+    ApodClient(HttpClient http, String apiUrl) {
+        this.http = http;
+        this.apiUrl = apiUrl;
+    }
+
+    /**
+     * Fetches the entry for a single day. If a request for the same day is already in flight (e.g. the activity
+     * was recreated while it was loading), waits for it and returns its entry instead of sending another.
+     *
+     * @param date the day to fetch
+     * @return the day's entry
+     * @throws IOException if the request fails or the response cannot be read
+     */
+    public ApodMetadata fetch(Date date) throws IOException {
+        return DAY_REQUESTS.run(date, () -> request(date));
+    }
+
+    /**
+     * Sends the request for a single day.
+     *
+     * @param date the day to fetch
+     * @return the day's entry
+     * @throws IOException if the request fails or the response cannot be read
+     */
+    private ApodMetadata request(Date date) throws IOException {
+        try (Response response = get(new URL(apiUrl + "&date=" + date.toString()))) {
+            return parserFor(response).readEntry();
+        }
+    }
+
+    /**
+     * Fetches the entries for every valid day in a range, using one request per MAX_DAYS_PER_REQUEST days.
+     * Entries the API leaves out (or that cannot be read) are skipped.
+     *
+     * @param range the days to fetch; days outside June 16, 1995 to today are ignored
+     * @return the entries, in date order
+     * @throws IOException if a request fails or a response cannot be read
+     */
+    public List<ApodMetadata> fetchRange(DateRange range) throws IOException {
+        DateRange valid = range.intersectArchive();
+        List<ApodMetadata> entries = new ArrayList<>(valid.size());
+        for (DateRange chunk : valid.chunks(MAX_DAYS_PER_REQUEST)) {
+            URL url = new URL(apiUrl + "&start_date=" + chunk.getFirst() + "&end_date=" + chunk.getLast());
+            try (Response response = get(url)) {
+                // One bad entry should not lose the rest of the range, so the parser skips it
+                entries.addAll(parserFor(response).readEntries());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param url the URL to fetch
+     * @return the successful response, which the caller must close
+     * @throws IOException if the request fails or the server returns an error
+     */
+    private Response get(URL url) throws IOException {
+        Response response = http.get(url);
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("APOD request failed with HTTP " + response.getStatusCode());
+        }
+        return response;
+    }
+
+    /**
+     * Returns a parser reading a response's body as it arrives.
+     *
+     * @param response the response
+     * @return the parser
+     * @throws IOException if the body cannot be opened
+     */
+    private static ApodJsonParser parserFor(Response response) throws IOException {
+        return new ApodJsonParser(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ApodJsonParser class reads APOD API responses straight from the response stream into ApodMetadata, without
+ * building the whole body as a String or a JSON tree first. Only the fields ApodMetadata holds are kept; every other
+ * value (including nested objects and arrays) is skipped as it is read.
+ * Handles a single entry (a date request) or an array of entries (a range request).
+ *
+ * @author Caitlin Ross
+ */
+public class ApodJsonParser {
+    /** Number of characters read from the stream at a time */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** The response text */
+    private final Reader in;
+    /** Characters read from the stream; those from position to limit have not been parsed yet */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    /** Reused to build each string value that is kept */
+    private final StringBuilder text = new StringBuilder();
+
+    /** The fields of the entry being read, reset for each entry */
+    private String date;
+    private String title;
+    private String explanation;
+    private String url;
+    private String hdUrl;
+    private String mediaType;
+
+    /**
+     * Constructor.
+     *
+     * @param in the response text; it is read in large blocks, so it does not need to be buffered
+     */
+    public ApodJsonParser(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a response holding a single entry.
+     *
+     * @return the entry
+     * @throws IOException if the stream cannot be read, or the response is not a valid entry
+     */
+    public ApodMetadata readEntry() throws IOException {
+        expect('{');
+        try {
+            return readObject();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed APOD response", e);
+        }
+    }
+
+    /**
+     * Reads a response holding an array of entries. Entries that are missing a required field or have an invalid
+     * date are skipped, so one bad entry does not lose the rest of the range.
+     *
+     * @return the entries, in the order they were sent
+     * @throws IOException if the stream cannot be read, or the response is not an array of objects
+     */
+    public List<ApodMetadata> readEntries() throws IOException {
+        List<ApodMetadata> entries = new ArrayList<>();
+        expect('[');
+        int next = nextNonWhitespace();
+        if (next == ']') {
+            return entries;
+        }
+        while (true) {
+            if (next != '{') {
+                throw syntaxError("Expected an object");
+            }
+            try {
+                entries.add(readObject());
+            } catch (IllegalArgumentException e) {
+                // Expected for some entries (e.g. a date before the archive began); the entry has been read to
+                // its end, so the rest of the array can still be read
+            }
+            next = nextNonWhitespace();
+            if (next == ']') {
+                return entries;
+            }
+            if (next != ',') {
+                throw syntaxError("Expected ',' or ']'");
+            }
+            next = nextNonWhitespace();
+        }
+    }
+
+    /**
+     * Reads the members of an object whose '{' has been read, up to and including its '}'.
+     *
+     * @return the entry
+     * @throws IOException if the stream cannot be read or the object is malformed
+     * @throws IllegalArgumentException if a required field is missing or the date is not a valid APOD date
+     */
+    private ApodMetadata readObject() throws IOException, IllegalArgumentException {
+        date = null;
+        title = null;
+        explanation = null;
+        url = null;
+        hdUrl = null;
+        mediaType = null;
+
+        int next = nextNonWhitespace();
+        if (next != '}') {
+            while (true) {
+                if (next != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                String name = readString(true);
+                expect(':');
+                readMember(name);
+                next = nextNonWhitespace();
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                next = nextNonWhitespace();
+            }
+        }
+
+        if (date == null || title == null || url == null) {
+            throw new IllegalArgumentException();
+        }
+        return new ApodMetadata(new Date(date), title, explanation, url, hdUrl, mediaType);
+    }
+
+    /**
+     * Reads one member's value, keeping it if it is one of the fields ApodMetadata holds.
+     *
+     * @param name the member's name
+     * @throws IOException if the stream cannot be read or the value is malformed
+     */
+    private void readMember(String name) throws IOException {
+        switch (name) {
+            case "date":
+                date = readStringOrNull();
+                break;
+            case "title":
+                title = readStringOrNull();
+                break;
+            case "explanation":
+                explanation = readStringOrNull();
+                break;
+            case "url":
+                url = readStringOrNull();
+                break;
+            case "hdurl":
+                hdUrl = readStringOrNull();
+                break;
+            case "media_type":
+                mediaType = readStringOrNull();
+                break;
+            default:
+                skipValue(nextNonWhitespace());
+                break;
+        }
+    }
+
+    /**
+     * Reads a value that should be a string.
+     *
+     * @return the string, or null if the value is null or not a string
+     * @throws IOException if the stream cannot be read or the value is malformed
+     */
+    private String readStringOrNull() throws IOException {
+        int first = nextNonWhitespace();
+        if (first == '"') {
+            return readString(true);
+        }
+        skipValue(first);
+        return null;
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote has been read.
+     *
+     * @param keep true to build and return the string, false to skip it
+     * @return the string, or null if it was skipped
+     * @throws IOException if the stream cannot be read or the string is malformed
+     */
+    private String readString(boolean keep) throws IOException {
+        if (keep) {
+            text.setLength(0);
+        }
+        while (true) {
+            // Copy the run of plain characters in the buffer in one go
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                position++;
+            }
+            if (keep) {
+                text.append(buffer, start, position - start);
+            }
+            if (position == limit) {
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+
+            char c = buffer[position++];
+            if (c == '"') {
+                return keep ? text.toString() : null;
+            }
+            char escaped = readEscape();
+            if (keep) {
+                text.append(escaped);
+            }
+        }
+    }
+
+    /**
+     * Reads an escape sequence whose backslash has been read.
+     *
+     * @return the character it stands for
+     * @throws IOException if the stream cannot be read or the escape is malformed
+     */
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Malformed escape");
+        }
+    }
+
+    /**
+     * Skips a value without building it.
+     *
+     * @param first the value's first character, already read
+     * @throws IOException if the stream cannot be read or the value is malformed
+     */
+    private void skipValue(int first) throws IOException {
+        switch (first) {
+            case '"':
+                readString(false);
+                break;
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            case -1:
+                throw syntaxError("Unexpected end of response");
+            default:
+                // A number, true, false or null: runs up to the next delimiter
+                while (true) {
+                    int c = peek();
+                    if (c == -1 || c == ',' || c == '}' || c == ']' || isWhitespace(c)) {
+                        break;
+                    }
+                    position++;
+                }
+                break;
+        }
+    }
+
+    /**
+     * Skips the rest of an object or array whose opening bracket has been read, including any nested ones.
+     *
+     * @throws IOException if the stream cannot be read or it is unterminated
+     */
+    private void skipContainer() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == '"') {
+                readString(false);
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            } else if (c == -1) {
+                throw syntaxError("Unterminated object or array");
+            }
+        }
+    }
+
+    /**
+     * Reads the next character that is not whitespace and checks it.
+     *
+     * @param expected the character that must come next
+     * @throws IOException if the stream cannot be read or a different character comes next
+     */
+    private void expect(char expected) throws IOException {
+        if (nextNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * Reads the next character that is not whitespace.
+     *
+     * @return the character, or -1 at the end of the response
+     * @throws IOException if the stream cannot be read
+     */
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    /**
+     * Reads the next character.
+     *
+     * @return the character, or -1 at the end of the response
+     * @throws IOException if the stream cannot be read
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Returns the next character without reading it.
+     *
+     * @return the character, or -1 at the end of the response
+     * @throws IOException if the stream cannot be read
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Refills the buffer from the stream once everything in it has been parsed.
+     *
+     * @return false at the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = in.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    /**
+     * Returns true for the whitespace JSON allows between tokens.
+     *
+     * @param c the character
+     * @return true for space, tab, line feed and carriage return
+     */
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Builds the exception thrown for a malformed response.
+     *
+     * @param message what was wrong
+     * @return the exception
+     */
+    private static IOException syntaxError(String message) {
+        return new IOException("Malformed APOD response: " + message);
+    }
+}
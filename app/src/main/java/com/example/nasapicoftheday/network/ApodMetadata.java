@@ -0,0 +1,96 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+/**
+ * The ApodMetadata class holds the fields of one Astronomy Picture of the Day API entry that the app uses.
+ *
+ * @author Caitlin Ross
+ */
+public class ApodMetadata {
+    /** The media type of entries that are pictures; other entries (e.g. "video") cannot be saved */
+    public static final String MEDIA_TYPE_IMAGE = "image";
+
+    /** The day the entry was the Image of the Day */
+    private final Date date;
+    /** The entry's title */
+    private final String title;
+    /** The entry's explanation, or null if it has none */
+    private final String explanation;
+    /** The URL of the image (or other media) */
+    private final String url;
+    /** The URL of the high-resolution image, or null if there is none */
+    private final String hdUrl;
+    /** The media type (e.g. "image" or "video") */
+    private final String mediaType;
+
+    /**
+     * Constructor.
+     *
+     * @param date the day the entry was the Image of the Day
+     * @param title the entry's title
+     * @param explanation the entry's explanation, or null
+     * @param url the URL of the media
+     * @param hdUrl the URL of the high-resolution image, or null
+     * @param mediaType the media type, or null if the API did not say (treated as an image)
+     */
+    public ApodMetadata(Date date, String title, String explanation, String url, String hdUrl, String mediaType) {
+        this.date = date;
+        this.title = title;
+        this.explanation = explanation;
+        this.url = url;
+        this.hdUrl = hdUrl;
+        this.mediaType = (mediaType == null) ? MEDIA_TYPE_IMAGE : mediaType;
+    }
+
+    /**
+     * Returns the day the entry was the Image of the Day.
+     *
+     * @return the entry's date
+     */
+    public Date getDate() { return date; }
+
+    /**
+     * Returns the entry's title.
+     *
+     * @return the title
+     */
+    public String getTitle() { return title; }
+
+    /**
+     * Returns the entry's explanation.
+     *
+     * @return the explanation, or null if it has none
+     */
+    public String getExplanation() { return explanation; }
+
+    /**
+     * Returns the URL of the image (or other media).
+     *
+     * @return the media URL
+     */
+    public String getUrl() { return url; }
+
+    /**
+     * Returns the URL of the high-resolution image.
+     *
+     * @return the high-resolution URL, or null if there is none
+     */
+    public String getHdUrl() { return hdUrl; }
+
+    /**
+     * Returns the media type.
+     *
+     * @return the media type (e.g. "image" or "video")
+     */
+    public String getMediaType() { return mediaType; }
+
+    /**
+     * Returns true if the entry is a picture the app can download.
+     *
+     * @return true if the media type is "image"
+     */
+    public boolean isImage() {
+        return MEDIA_TYPE_IMAGE.equals(mediaType);
+    }
+}
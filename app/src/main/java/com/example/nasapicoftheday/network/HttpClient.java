@@ -0,0 +1,115 @@
+package com.example.nasapicoftheday.network;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The HttpClient class makes the app's HTTP requests.
+ * Connections are never disconnected explicitly: every Response drains and closes its body, which hands the
+ * connection back to HttpURLConnection's keep-alive pool, so consecutive requests to the same host reuse the
+ * socket and TLS session.
+ *
+ * @author Caitlin Ross
+ */
+public class HttpClient {
+    /** Default time allowed to open a connection, in milliseconds */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15_000;
+    /** Default time allowed between reads once connected, in milliseconds */
+    public static final int DEFAULT_READ_TIMEOUT = 30_000;
+    /** Most idle connections kept open per host; read by HttpURLConnection when its pool is first used */
+    private static final String MAX_POOLED_CONNECTIONS = "5";
+
+    /** The shared instance, using the default timeouts */
+    private static HttpClient instance;
+
+    /** Time allowed to open a connection, in milliseconds */
+    private final int connectTimeout;
+    /** Time allowed between reads, in milliseconds */
+    private final int readTimeout;
+
+    /**
+     * Constructor.
+     *
+     * @param connectTimeout time allowed to open a connection, in milliseconds (0 waits forever)
+     * @param readTimeout time allowed between reads, in milliseconds (0 waits forever)
+     * @throws IllegalArgumentException if either timeout is negative
+     */
+    public HttpClient(int connectTimeout, int readTimeout) throws IllegalArgumentException {
+        if (connectTimeout < 0 || readTimeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the shared client, creating it if necessary.
+     *
+     * @return the shared HttpClient
+     */
+    public static synchronized HttpClient getInstance() {
+        if (instance == null) {
+            // Keep-alive is on by default; these only make the pool settings explicit
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", MAX_POOLED_CONNECTIONS);
+            instance = new HttpClient(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+        }
+        return instance;
+    }
+
+    /**
+     * Sends a GET request for text (e.g. JSON), accepting a gzip-compressed body.
+     *
+     * @param url the URL to fetch
+     * @return the Response, which the caller must close
+     * @throws IOException if the request could not be sent or the response could not be read
+     */
+    public Response get(URL url) throws IOException {
+        return send(url, Collections.emptyMap(), true);
+    }
+
+    /**
+     * Sends a GET request for binary content (e.g. an image). The body is requested uncompressed, so its length
+     * and any byte ranges match the file on the server.
+     *
+     * @param url the URL to fetch
+     * @param headers extra request headers
+     * @return the Response, which the caller must close
+     * @throws IOException if the request could not be sent or the response could not be read
+     */
+    public Response download(URL url, Map<String, String> headers) throws IOException {
+        return send(url, headers, false);
+    }
+
+    /**
+     * Opens the connection, sends the request and reads the status line and headers.
+     *
+     * @param url the URL to fetch
+     * @param headers extra request headers
+     * @param acceptGzip true to accept a gzip-compressed body
+     * @return the Response, which the caller must close
+     * @throws IOException if the request could not be sent or the response could not be read
+     */
+    private Response send(URL url, Map<String, String> headers, boolean acceptGzip) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setInstanceFollowRedirects(true);
+        // Setting the header ourselves means the body is not unzipped for us; Response does that
+        connection.setRequestProperty("Accept-Encoding", acceptGzip ? "gzip" : "identity");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        try {
+            return new Response(connection, connection.getResponseCode());
+        } catch (IOException e) {
+            // The connection never produced a usable response, so it cannot go back to the pool
+            connection.disconnect();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.nasapicoftheday.network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The Response class is an HTTP response whose body is read as a stream.
+ * Closing it reads off whatever is left of the body (up to a limit) before closing the stream, so the connection
+ * can be reused for the next request.
+ *
+ * @author Caitlin Ross
+ */
+public class Response implements Closeable {
+    /** Most unread body bytes read off on close to keep the connection; larger leftovers drop it instead */
+    private static final int DRAIN_LIMIT = 64 * 1024;
+    /** Size of the buffer used to read text bodies and to drain leftovers */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** The connection the response arrived on */
+    private final HttpURLConnection connection;
+    /** The HTTP status code */
+    private final int statusCode;
+    /** The body as sent on the wire, or null until it is first opened */
+    private InputStream rawBody;
+    /** The body as handed to the caller (unzipped if needed), or null until it is first opened */
+    private InputStream body;
+    /** True once the response has been closed */
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param connection the connection, with its status line and headers already read
+     * @param statusCode the HTTP status code
+     */
+    Response(HttpURLConnection connection, int statusCode) {
+        this.connection = connection;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status code.
+     *
+     * @return the status code (e.g. 200)
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns true if the status code is in the 2xx range.
+     *
+     * @return true if the request succeeded
+     */
+    public boolean isSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Returns the value of a response header.
+     *
+     * @param name the header name (case-insensitive)
+     * @return the header's value, or null if it is missing
+     */
+    public String getHeader(String name) {
+        return connection.getHeaderField(name);
+    }
+
+    /**
+     * Returns the length of the body as sent on the wire.
+     *
+     * @return the Content-Length in bytes, or -1 if it is unknown
+     */
+    public long getContentLength() {
+        String length = getHeader("Content-Length");
+        if (length == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the body as a stream, unzipped if the server compressed it. The stream is closed with the Response.
+     *
+     * @return the body (empty if the response has none)
+     * @throws IOException if the body could not be opened
+     */
+    public InputStream getBody() throws IOException {
+        if (closed) {
+            throw new IOException("Response is closed");
+        }
+        if (body == null) {
+            rawBody = openRawBody();
+            String encoding = getHeader("Content-Encoding");
+            body = "gzip".equalsIgnoreCase(encoding) ? new GZIPInputStream(rawBody, BUFFER_SIZE) : rawBody;
+        }
+        return body;
+    }
+
+    /**
+     * Reads the whole body as UTF-8 text, then closes the Response.
+     *
+     * @return the body as a String
+     * @throws IOException if the body could not be read
+     */
+    public String readString() throws IOException {
+        try {
+            InputStream in = getBody();
+            ByteArrayOutputStream text = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                text.write(buffer, 0, count);
+            }
+            return new String(text.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Reads off what is left of the body, then closes it so the connection can go back to the pool.
+     * If the leftover is too large it is cheaper to drop the connection than to read it all.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            InputStream in = (rawBody != null) ? rawBody : openRawBody();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int drained = 0;
+            int count;
+            while (drained <= DRAIN_LIMIT && (count = in.read(buffer)) != -1) {
+                drained += count;
+            }
+            if (drained > DRAIN_LIMIT) {
+                connection.disconnect();
+            }
+            // Closing the unzipping stream also releases its Inflater
+            ((body != null) ? body : in).close();
+        } catch (IOException e) {
+            // The connection is unusable; make sure it is not pooled
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Opens the body as sent on the wire; error responses carry their body on the error stream.
+     *
+     * @return the raw body (empty if the response has none)
+     * @throws IOException if the body could not be opened
+     */
+    private InputStream openRawBody() throws IOException {
+        InputStream in = isSuccessful() ? connection.getInputStream() : connection.getErrorStream();
+        return (in != null) ? in : new ByteArrayInputStream(new byte[0]);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.nasapicoftheday.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The SingleFlight class coalesces duplicate requests: while a call for a key is in flight, other callers asking
+ * for the same key wait for that call and get its result instead of starting their own.
+ * The first caller runs the call on its own thread; nothing is cached once the call has finished.
+ *
+ * @param <K> the type of key requests are matched by
+ * @param <V> the type of result
+ * @author Caitlin Ross
+ */
+public class SingleFlight<K, V> {
+    /** The calls in flight, by key (guarded by this) */
+    private final Map<K, FutureTask<V>> inFlight = new HashMap<>();
+
+    /**
+     * Runs a call, or waits for the call already in flight for the same key.
+     *
+     * @param key the key identifying the request
+     * @param call what to run if no call for the key is in flight
+     * @return the result of the call that ran
+     * @throws IOException if the call failed; a waiting caller gets an IOException caused by the original failure
+     * @throws InterruptedIOException if the thread is interrupted while waiting for another caller's call
+     */
+    public V run(K key, Callable<V> call) throws IOException {
+        while (true) {
+            FutureTask<V> task;
+            boolean leader = false;
+            synchronized (this) {
+                task = inFlight.get(key);
+                if (task == null) {
+                    task = new FutureTask<>(call);
+                    inFlight.put(key, task);
+                    leader = true;
+                }
+            }
+
+            if (leader) {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (this) {
+                        inFlight.remove(key);
+                    }
+                }
+            }
+
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                // Only a waiting caller can get here; the leader's task has already finished
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + key);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!leader && cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+                    // The caller that ran the call was cancelled, which says nothing about this caller's request.
+                    // A timeout does: the same request would most likely time out again.
+                    continue;
+                }
+                throw unwrap(cause, leader);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a call for a key is in flight.
+     *
+     * @param key the key
+     * @return true if a call for the key has started and not finished
+     */
+    public synchronized boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    /**
+     * Turns the failure of a call into the exception to throw. The caller that ran the call gets the original
+     * exception; waiting callers get a new one on their own stack, caused by it.
+     *
+     * @param cause what the call threw
+     * @param leader true if the current thread ran the call
+     * @return the exception to throw
+     */
+    private static IOException unwrap(Throwable cause, boolean leader) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (leader && cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+}
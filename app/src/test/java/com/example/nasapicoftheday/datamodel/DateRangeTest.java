@@ -0,0 +1,120 @@
+package com.example.nasapicoftheday.datamodel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DateRange and DateSet.
+ *
+ * @author Caitlin Ross
+ */
+public class DateRangeTest {
+    /** Noon UTC on March 1, 2020, the pinned "today" */
+    private static final long MARCH_1_2020_NOON = 1583064000000L;
+
+    @Before
+    public void pinClock() {
+        Date.setClock(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return MARCH_1_2020_NOON;
+            }
+
+            @Override
+            public TimeZone getTimeZone() {
+                return TimeZone.getTimeZone("UTC");
+            }
+        });
+    }
+
+    @After
+    public void resetClock() {
+        Date.setClock(null);
+    }
+
+    @Test
+    public void forEachDay_visitsEveryDayInOrder() {
+        DateRange range = new DateRange(new Date("2019-12-30"), new Date("2020-01-02"));
+        int[] visited = new int[4];
+        int[] count = {0};
+        range.forEachDay(day -> visited[count[0]++] = day);
+
+        assertEquals(4, range.size());
+        assertEquals(4, count[0]);
+        assertEquals("2019-12-30", Date.ofEpochDay(visited[0]).toString());
+        assertEquals("2020-01-02", Date.ofEpochDay(visited[3]).toString());
+    }
+
+    @Test
+    public void split_coversRangeWithoutOverlap() {
+        DateRange range = new DateRange(new Date("2020-01-01"), new Date("2020-01-10"));
+        DateRange[] pieces = range.split(3);
+
+        assertEquals(3, pieces.length);
+        assertEquals(4, pieces[0].size());
+        assertEquals(3, pieces[1].size());
+        assertEquals(3, pieces[2].size());
+        assertEquals(range.getFirstEpochDay(), pieces[0].getFirstEpochDay());
+        assertEquals(pieces[0].getLastEpochDay() + 1, pieces[1].getFirstEpochDay());
+        assertEquals(pieces[1].getLastEpochDay() + 1, pieces[2].getFirstEpochDay());
+        assertEquals(range.getLastEpochDay(), pieces[2].getLastEpochDay());
+
+        DateRange[] chunks = range.chunks(7);
+        assertEquals(2, chunks.length);
+        assertEquals(7, chunks[0].size());
+        assertEquals(3, chunks[1].size());
+    }
+
+    @Test
+    public void intersectArchive_clipsToValidDates() {
+        DateRange wide = DateRange.ofEpochDays(0, Date.FIRST_EPOCH_DAY + 1000000);
+        assertEquals(DateRange.archive(), wide.intersectArchive());
+        assertEquals("1995-06-16", wide.intersectArchive().getFirst().toString());
+        assertEquals("2020-03-01", wide.intersectArchive().getLast().toString());
+
+        assertTrue(DateRange.ofEpochDays(0, 100).intersectArchive().isEmpty());
+        assertTrue(new DateRange(new Date("2000-01-01"), new Date("2000-01-31"))
+                .intersect(new DateRange(new Date("2000-02-01"), new Date("2000-02-28"))).isEmpty());
+    }
+
+    @Test
+    public void dateSet_missingIn_findsUnsavedDays() {
+        DateSet saved = new DateSet();
+        saved.add(new Date("2020-01-02"));
+        saved.add(new Date("2020-01-04"));
+        saved.add(new Date("2019-06-01"));
+
+        DateSet missing = saved.missingIn(new DateRange(new Date("2020-01-01"), new Date("2020-01-05")));
+        assertEquals(3, missing.size());
+        assertTrue(missing.contains(new Date("2020-01-01")));
+        assertFalse(missing.contains(new Date("2020-01-02")));
+        assertTrue(missing.contains(new Date("2020-01-03")));
+        assertTrue(missing.contains(new Date("2020-01-05")));
+        assertFalse(missing.contains(new Date("2019-06-01")));
+    }
+
+    @Test
+    public void dateSet_unionAndDifference() {
+        DateSet a = DateSet.of(new DateRange(new Date("2020-01-01"), new Date("2020-01-10")));
+        DateSet b = DateSet.of(new DateRange(new Date("2020-01-06"), new Date("2020-01-15")));
+
+        DateSet union = a.copy();
+        union.addAll(b);
+        assertEquals(15, union.size());
+
+        DateSet difference = a.copy();
+        difference.removeAll(b);
+        assertEquals(5, difference.size());
+        assertEquals(10, a.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dateSet_rejectsDaysBeforeArchive() {
+        new DateSet().add(Date.FIRST_EPOCH_DAY - 1);
+    }
+}
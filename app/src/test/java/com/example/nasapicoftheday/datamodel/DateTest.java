@@ -0,0 +1,123 @@
+package com.example.nasapicoftheday.datamodel;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the packed Date representation.
+ *
+ * @author Caitlin Ross
+ */
+public class DateTest {
+    /** Noon UTC on March 1, 2020 */
+    private static final long MARCH_1_2020_NOON = 1583064000000L;
+
+    @After
+    public void resetClock() {
+        Date.setClock(null);
+    }
+
+    /**
+     * Pins "today" to a fixed time.
+     *
+     * @param millis the time, in milliseconds since January 1, 1970 UTC
+     * @param zone the time zone that decides the calendar day
+     */
+    private static void pinClock(long millis, String zone) {
+        Date.setClock(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return millis;
+            }
+
+            @Override
+            public TimeZone getTimeZone() {
+                return TimeZone.getTimeZone(zone);
+            }
+        });
+    }
+
+    @Test
+    public void today_followsClock() {
+        pinClock(MARCH_1_2020_NOON, "UTC");
+        assertEquals("2020-03-01", new Date().toString());
+        new Date(2020, 3, 1);
+
+        // Already March 2 in Auckland
+        pinClock(MARCH_1_2020_NOON, "Pacific/Auckland");
+        assertEquals("2020-03-02", new Date().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void validation_rejectsTomorrow() {
+        pinClock(MARCH_1_2020_NOON, "UTC");
+        new Date(2020, 3, 2);
+    }
+
+    @Test
+    public void validation_usesGregorianLeapYears() {
+        pinClock(MARCH_1_2020_NOON, "UTC");
+        new Date(2000, 2, 29);
+        new Date(2016, 2, 29);
+        try {
+            new Date(2019, 2, 29);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // 2019 is not a leap year
+        }
+    }
+
+    @Test
+    public void parse_and_format_roundTrip() {
+        Date date = new Date("2004-02-29");
+        assertEquals(2004, date.getYear());
+        assertEquals(2, date.getMonth());
+        assertEquals(29, date.getDay());
+        assertEquals(20040229, date.toPacked());
+        assertEquals("2004-02-29", date.toString());
+    }
+
+    @Test
+    public void epochDay_roundTrip() {
+        Date first = new Date(1995, 6, 16);
+        assertEquals(Date.FIRST_EPOCH_DAY, first.toEpochDay());
+        assertEquals(0, first.getDayOffset());
+        assertEquals(first, Date.ofEpochDay(Date.FIRST_EPOCH_DAY));
+
+        for (int day = Date.FIRST_EPOCH_DAY; day < Date.FIRST_EPOCH_DAY + 3000; day++) {
+            assertEquals(day, Date.ofEpochDay(day).toEpochDay());
+        }
+    }
+
+    @Test
+    public void equals_hashCode_compareTo() {
+        Date a = new Date("2010-05-01");
+        Date b = Date.ofPacked(20100501);
+        Date c = new Date(2010, 5, 2);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+        assertTrue(a.compareTo(c) < 0);
+        assertTrue(c.compareTo(a) > 0);
+        assertEquals(0, a.compareTo(b));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsBadFormat() {
+        new Date("2010-5-01");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsNonDigits() {
+        new Date("20x0-05-01");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsDateBeforeFirstImage() {
+        new Date("1995-06-15");
+    }
+}
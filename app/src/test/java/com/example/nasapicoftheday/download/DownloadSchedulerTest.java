@@ -0,0 +1,277 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.Image;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DownloadScheduler's lanes and cancellation, using work that blocks until the test releases it.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadSchedulerTest {
+    /** Released once per job the test lets finish */
+    private final Semaphore release = new Semaphore(0);
+    /** Jobs that have started, by date */
+    private final ConcurrentHashMap<Date, CountDownLatch> started = new ConcurrentHashMap<>();
+    /** Every scheduler a test has made, stopped after it */
+    private final List<DownloadScheduler> schedulers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (DownloadScheduler scheduler : schedulers) {
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Creates a scheduler whose jobs wait for a permit, then succeed.
+     *
+     * @param workers the number of workers
+     * @return the scheduler
+     */
+    private DownloadScheduler newScheduler(int workers) {
+        return newScheduler(workers, 0, job -> {
+            started.computeIfAbsent(job.getDate(), d -> new CountDownLatch(1)).countDown();
+            release.acquire();
+            return new Image("title", new Date(), job.getDate(), "file.jpeg");
+        });
+    }
+
+    /**
+     * Creates a scheduler that is stopped after the test.
+     *
+     * @param workers the number of workers
+     * @param stallTimeoutMillis how long a job may go without progress, or 0 for no limit
+     * @param work what each job does
+     * @return the scheduler
+     */
+    private DownloadScheduler newScheduler(int workers, long stallTimeoutMillis, DownloadScheduler.Work work) {
+        DownloadScheduler scheduler = new DownloadScheduler(workers, stallTimeoutMillis, work);
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    /**
+     * Waits for a job to start.
+     *
+     * @param date the job's date
+     * @return true if it started within a second
+     */
+    private boolean awaitStart(Date date) throws InterruptedException {
+        return started.computeIfAbsent(date, d -> new CountDownLatch(1)).await(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void backgroundJobsLeaveAWorkerForTheUser() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(2);
+        Date first = new Date("2020-01-01");
+        Date second = new Date("2020-01-02");
+        Date userDate = new Date("2020-02-01");
+
+        scheduler.schedule(first, DownloadJob.Priority.BACKGROUND);
+        DownloadJob waiting = scheduler.schedule(second, DownloadJob.Priority.BACKGROUND);
+        assertTrue(awaitStart(first));
+        assertEquals(DownloadJob.State.QUEUED, waiting.getState());
+
+        // The second worker is free for the user's job
+        DownloadJob userJob = scheduler.schedule(userDate, DownloadJob.Priority.USER);
+        assertTrue(awaitStart(userDate));
+        assertEquals(DownloadJob.State.RUNNING, userJob.getState());
+        assertEquals(DownloadJob.State.QUEUED, waiting.getState());
+
+        release.release(3);
+        assertTrue(awaitStart(second));
+    }
+
+    @Test
+    public void sameDateSharesOneJobAndIsPromoted() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(2);
+        Date blocker = new Date("2020-01-01");
+        Date date = new Date("2020-01-02");
+
+        scheduler.schedule(blocker, DownloadJob.Priority.BACKGROUND);
+        assertTrue(awaitStart(blocker));
+        DownloadJob background = scheduler.schedule(date, DownloadJob.Priority.BACKGROUND);
+        DownloadJob user = scheduler.schedule(date, DownloadJob.Priority.USER);
+
+        assertSame(background, user);
+        assertEquals(DownloadJob.Priority.USER, user.getPriority());
+        assertTrue(awaitStart(date));
+        release.release(2);
+    }
+
+    @Test
+    public void cancelDropsWaitingJob() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(1);
+        Date running = new Date("2020-01-01");
+        Date waiting = new Date("2020-01-02");
+
+        scheduler.schedule(running, DownloadJob.Priority.USER);
+        assertTrue(awaitStart(running));
+        DownloadJob job = scheduler.schedule(waiting, DownloadJob.Priority.USER);
+
+        assertTrue(scheduler.cancel(waiting));
+        assertEquals(DownloadJob.State.CANCELLED, job.getState());
+        assertNull(scheduler.getJob(waiting));
+        assertFalse(scheduler.cancel(waiting));
+        release.release();
+    }
+
+    @Test
+    public void cancelInterruptsRunningJob() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(1);
+        Date date = new Date("2020-01-01");
+
+        DownloadJob job = scheduler.schedule(date, DownloadJob.Priority.USER);
+        assertTrue(awaitStart(date));
+        CountDownLatch finished = new CountDownLatch(1);
+        scheduler.addJobListener(changed -> {
+            if (changed.getState().isFinished()) {
+                finished.countDown();
+            }
+        }, Runnable::run);
+
+        assertTrue(scheduler.cancel(date));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(DownloadJob.State.CANCELLED, job.getState());
+    }
+
+    @Test
+    public void schedulingCancelledRunningJobQueuesNewOne() throws InterruptedException {
+        // Work that only notices a cancel when it is released, like a download between checkpoints
+        DownloadScheduler scheduler = newScheduler(1, 0, job -> {
+            started.computeIfAbsent(job.getDate(), d -> new CountDownLatch(1)).countDown();
+            release.acquireUninterruptibly();
+            job.checkCancelled();
+            return new Image("title", new Date(), job.getDate(), "file.jpeg");
+        });
+        Date date = new Date("2020-01-01");
+
+        DownloadJob cancelled = scheduler.schedule(date, DownloadJob.Priority.USER);
+        assertTrue(awaitStart(date));
+        assertTrue(scheduler.cancel(date));
+        DownloadJob again = scheduler.schedule(date, DownloadJob.Priority.USER);
+        assertNotSame(cancelled, again);
+        assertSame(again, scheduler.getJob(date));
+
+        // Let the cancelled job finish first; the new one is left in place
+        release.release();
+        awaitState(cancelled, DownloadJob.State.CANCELLED);
+        assertSame(again, scheduler.getJob(date));
+        release.release();
+        awaitState(again, DownloadJob.State.SUCCEEDED);
+        assertNull(scheduler.getJob(date));
+    }
+
+    @Test
+    public void cancelStopsTransferAtNextBlock() throws InterruptedException {
+        CountDownLatch transferring = new CountDownLatch(1);
+        DownloadScheduler scheduler = newScheduler(1, 0, job -> {
+            job.enterStage(DownloadJob.Stage.FETCH);
+            // Never blocks, so only the per-block check can stop it
+            for (long bytes = 0; ; bytes++) {
+                job.transferred(bytes, -1);
+                transferring.countDown();
+            }
+        });
+        CountDownLatch finished = awaitFinish(scheduler);
+        Date date = new Date("2020-01-01");
+
+        DownloadJob job = scheduler.schedule(date, DownloadJob.Priority.USER);
+        assertTrue(transferring.await(1, TimeUnit.SECONDS));
+        assertTrue(scheduler.cancel(date));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(DownloadJob.State.CANCELLED, job.getState());
+    }
+
+    @Test
+    public void jobThatStallsTimesOut() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(1, 100, job -> {
+            job.enterStage(DownloadJob.Stage.FETCH);
+            Thread.sleep(10000);
+            return null;
+        });
+        CountDownLatch finished = awaitFinish(scheduler);
+
+        DownloadJob job = scheduler.schedule(new Date("2020-01-01"), DownloadJob.Priority.USER);
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals(DownloadJob.State.FAILED, job.getState());
+        assertEquals(DownloadJob.Stage.FETCH, job.getStage());
+        assertTrue(job.getError() instanceof SocketTimeoutException);
+    }
+
+    @Test
+    public void slowDownloadThatKeepsProgressingIsNotTimedOut() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(1, 100, job -> {
+            job.enterStage(DownloadJob.Stage.FETCH);
+            // 400 ms in all, but never more than 40 ms without a block
+            for (int block = 1; block <= 10; block++) {
+                Thread.sleep(40);
+                job.transferred(block, 10);
+            }
+            return new Image("title", new Date(), job.getDate(), "file.jpeg");
+        });
+        CountDownLatch finished = awaitFinish(scheduler);
+
+        DownloadJob job = scheduler.schedule(new Date("2020-01-01"), DownloadJob.Priority.USER);
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertEquals(DownloadJob.State.SUCCEEDED, job.getState());
+    }
+
+    @Test
+    public void jobIsNotTimedOutOncePictureIsFetched() throws InterruptedException {
+        DownloadScheduler scheduler = newScheduler(1, 100, job -> {
+            job.enterStage(DownloadJob.Stage.FETCH);
+            job.enterStage(DownloadJob.Stage.PERSIST);
+            Thread.sleep(300);
+            return new Image("title", new Date(), job.getDate(), "file.jpeg");
+        });
+        CountDownLatch finished = awaitFinish(scheduler);
+
+        DownloadJob job = scheduler.schedule(new Date("2020-01-01"), DownloadJob.Priority.USER);
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertEquals(DownloadJob.State.SUCCEEDED, job.getState());
+    }
+
+    /**
+     * Waits up to a second for a job to reach a state.
+     *
+     * @param job the job
+     * @param state the state
+     */
+    private static void awaitState(DownloadJob job, DownloadJob.State state) throws InterruptedException {
+        for (int i = 0; i < 100 && job.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, job.getState());
+    }
+
+    /**
+     * Returns a latch counted down when a job of a scheduler finishes.
+     *
+     * @param scheduler the scheduler
+     * @return the latch
+     */
+    private static CountDownLatch awaitFinish(DownloadScheduler scheduler) {
+        CountDownLatch finished = new CountDownLatch(1);
+        scheduler.addJobListener(changed -> {
+            if (changed.getState().isFinished()) {
+                finished.countDown();
+            }
+        }, Runnable::run);
+        return finished;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DownloadStatistics' per-stage totals.
+ *
+ * @author Caitlin Ross
+ */
+public class DownloadStatisticsTest {
+    private DownloadScheduler scheduler;
+    private DownloadJob job;
+    private final DownloadStatistics statistics = new DownloadStatistics();
+
+    @Before
+    public void setUp() {
+        scheduler = new DownloadScheduler(1, j -> null);
+        job = new DownloadJob(scheduler, new Date("2020-01-01"), null, DownloadJob.Priority.USER);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void keepsCountAverageAndLongestOfEachStage() {
+        statistics.onStageFinished(job, DownloadJob.Stage.FETCH, 100);
+        statistics.onStageFinished(job, DownloadJob.Stage.FETCH, 300);
+        statistics.onStageFinished(job, DownloadJob.Stage.PERSIST, 10);
+
+        assertEquals(2, statistics.getCount(DownloadJob.Stage.FETCH));
+        assertEquals(200, statistics.getAverageMillis(DownloadJob.Stage.FETCH));
+        assertEquals(300, statistics.getMaxMillis(DownloadJob.Stage.FETCH));
+        assertEquals(1, statistics.getCount(DownloadJob.Stage.PERSIST));
+        assertEquals(0, statistics.getCount(DownloadJob.Stage.METADATA));
+        assertEquals(0, statistics.getAverageMillis(DownloadJob.Stage.METADATA));
+    }
+
+    @Test
+    public void noRateUntilADownloadIsMeasured() throws Exception {
+        statistics.onStageFinished(job, DownloadJob.Stage.FETCH, 100);
+        assertEquals(-1, statistics.getAverageBytesPerSecond(), 0);
+
+        // One full sample gives the job a rate
+        job.transferred(0, 1000);
+        Thread.sleep(ThroughputMeter.MIN_SAMPLE_NANOS / 1_000_000 + 50);
+        job.transferred(1000, 1000);
+        statistics.onStageFinished(job, DownloadJob.Stage.FETCH, 300);
+        assertTrue(statistics.getAverageBytesPerSecond() > 0);
+    }
+}
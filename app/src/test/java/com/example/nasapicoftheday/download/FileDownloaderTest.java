@@ -0,0 +1,289 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.network.HttpClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests FileDownloader against a local HTTP stand-in that can drop the connection part way through a body.
+ *
+ * @author Caitlin Ross
+ */
+public class FileDownloaderTest {
+    /** The file the stand-in serves */
+    private static final byte[] BODY = new byte[300 * 1024];
+    /** The stand-in's strong validator */
+    private static final String ETAG = "\"apod-1\"";
+
+    static {
+        for (int i = 0; i < BODY.length; i++) {
+            BODY[i] = (byte) (i * 31 + 7);
+        }
+    }
+
+    private StandIn server;
+    private File directory;
+    private File target;
+    private FileDownloader downloader;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandIn();
+        directory = Files.createTempDirectory("downloads").toFile();
+        target = new File(directory, "image.jpeg");
+        downloader = new FileDownloader(new HttpClient(2000, 2000));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void resumesWithRangeAfterDroppedConnection() throws IOException {
+        // First attempt: the connection drops after 100 KB
+        server.respond((headers, out) -> sendFull(out, 100 * 1024));
+        try {
+            downloader.download(server.url(), target);
+            fail("A dropped connection must not look like a finished download");
+        } catch (IOException expected) {
+            // The partial file and its sidecar are kept
+        }
+        assertFalse(target.exists());
+        File partial = new File(target.getPath() + FileDownloader.PARTIAL_SUFFIX);
+        assertEquals(100 * 1024, partial.length());
+        assertTrue(new File(partial.getPath() + FileDownloader.META_SUFFIX).exists());
+
+        // Second attempt: the stand-in honours the range
+        server.respond((headers, out) -> {
+            long from = Long.parseLong(headers.get("range").replace("bytes=", "").replace("-", ""));
+            sendRange(out, (int) from);
+        });
+        assertTrue(downloader.download(server.url(), target));
+
+        assertEquals("bytes=" + (100 * 1024) + "-", server.requests.get(1).get("range"));
+        assertEquals(ETAG, server.requests.get(1).get("if-range"));
+        assertArrayEquals(BODY, Files.readAllBytes(target.toPath()));
+        assertFalse(partial.exists());
+        assertFalse(new File(partial.getPath() + FileDownloader.META_SUFFIX).exists());
+    }
+
+    @Test
+    public void restartsWhenServerIgnoresRange() throws IOException {
+        server.respond((headers, out) -> sendFull(out, 50 * 1024));
+        try {
+            downloader.download(server.url(), target);
+            fail();
+        } catch (IOException expected) {
+            // Partial download kept
+        }
+
+        // The stand-in answers the range request with the whole file
+        server.respond((headers, out) -> sendFull(out, BODY.length));
+        assertTrue(downloader.download(server.url(), target));
+        assertArrayEquals(BODY, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void reportsProgressIncludingResumedBytes() throws IOException {
+        server.respond((headers, out) -> sendFull(out, 100 * 1024));
+        try {
+            downloader.download(server.url(), target);
+            fail();
+        } catch (IOException expected) {
+            // Partial download kept
+        }
+
+        server.respond((headers, out) -> {
+            long from = Long.parseLong(headers.get("range").replace("bytes=", "").replace("-", ""));
+            sendRange(out, (int) from);
+        });
+        List<long[]> reports = new ArrayList<>();
+        assertTrue(downloader.download(server.url(), target,
+                (bytes, total) -> reports.add(new long[] { bytes, total })));
+
+        // The first report is what was already on disk, the last is the whole file
+        assertArrayEquals(new long[] { 100 * 1024, BODY.length }, reports.get(0));
+        assertArrayEquals(new long[] { BODY.length, BODY.length }, reports.get(reports.size() - 1));
+        for (int i = 1; i < reports.size(); i++) {
+            assertTrue(reports.get(i)[0] >= reports.get(i - 1)[0]);
+        }
+    }
+
+    @Test
+    public void restartsWhenResumedLengthIsUnknown() throws IOException {
+        // First attempt: a full response of unknown length, stopped by the listener after 100 KB
+        server.respond((headers, out) -> sendWithoutLength(out, "200 OK", "", 0));
+        try {
+            downloader.download(server.url(), target, (bytes, total) -> {
+                if (bytes >= 100 * 1024) {
+                    throw new InterruptedIOException();
+                }
+            });
+            fail();
+        } catch (InterruptedIOException expected) {
+            // Partial download kept
+        }
+
+        // The range is honoured but the total is not given, so the rest could not be checked
+        server.respond((headers, out) -> {
+            if (headers.containsKey("range")) {
+                long from = Long.parseLong(headers.get("range").replace("bytes=", "").replace("-", ""));
+                sendWithoutLength(out, "206 Partial Content",
+                        "Content-Range: bytes " + from + "-" + (BODY.length - 1) + "/*\r\n", (int) from);
+            } else {
+                sendFull(out, BODY.length);
+            }
+        });
+        assertTrue(downloader.download(server.url(), target));
+
+        assertNotNull(server.requests.get(1).get("range"));
+        assertNull(server.requests.get(2).get("range"));
+        assertArrayEquals(BODY, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void skipsExistingFile() throws IOException {
+        Files.write(target.toPath(), new byte[] { 1, 2, 3 });
+        assertFalse(downloader.download(server.url(), target));
+        assertTrue(server.requests.isEmpty());
+    }
+
+    /**
+     * Sends a 200 response for the whole body, closing the connection after the given number of body bytes.
+     *
+     * @param out the connection's output
+     * @param sent how many body bytes to send before closing
+     * @throws IOException if writing fails
+     */
+    private static void sendFull(OutputStream out, int sent) throws IOException {
+        String head = "HTTP/1.1 200 OK\r\n" +
+                "Content-Length: " + BODY.length + "\r\n" +
+                "ETag: " + ETAG + "\r\n" +
+                "Accept-Ranges: bytes\r\n" +
+                "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(BODY, 0, sent);
+        out.flush();
+    }
+
+    /**
+     * Sends a 206 response for the rest of the body from a given position.
+     *
+     * @param out the connection's output
+     * @param from the first byte to send
+     * @throws IOException if writing fails
+     */
+    private static void sendRange(OutputStream out, int from) throws IOException {
+        String head = "HTTP/1.1 206 Partial Content\r\n" +
+                "Content-Length: " + (BODY.length - from) + "\r\n" +
+                "Content-Range: bytes " + from + "-" + (BODY.length - 1) + "/" + BODY.length + "\r\n" +
+                "ETag: " + ETAG + "\r\n" +
+                "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(BODY, from, BODY.length - from);
+        out.flush();
+    }
+
+    /**
+     * Sends the body from a given position without a Content-Length, so only the closed connection ends it.
+     *
+     * @param out the connection's output
+     * @param status the status line's code and reason
+     * @param extraHeaders further header lines, each ending in CRLF
+     * @param from the first byte to send
+     * @throws IOException if writing fails
+     */
+    private static void sendWithoutLength(OutputStream out, String status, String extraHeaders, int from)
+            throws IOException {
+        String head = "HTTP/1.1 " + status + "\r\n" +
+                extraHeaders +
+                "ETag: " + ETAG + "\r\n" +
+                "Connection: close\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        out.write(BODY, from, BODY.length - from);
+        out.flush();
+    }
+
+    /**
+     * Writes one response for a request.
+     */
+    private interface Responder {
+        void respond(Map<String, String> headers, OutputStream out) throws IOException;
+    }
+
+    /**
+     * A one-connection-at-a-time HTTP server that answers each request with the most recent Responder and then
+     * closes the connection.
+     */
+    private static class StandIn implements AutoCloseable {
+        private final ServerSocket socket = new ServerSocket(0);
+        /** The headers of every request received, lower-cased names */
+        final List<Map<String, String>> requests = new ArrayList<>();
+        private volatile Responder responder;
+
+        StandIn() throws IOException {
+            Thread thread = new Thread(this::serve, "StandIn");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        URL url() throws IOException {
+            return new URL("http://127.0.0.1:" + socket.getLocalPort() + "/image.jpeg");
+        }
+
+        void respond(Responder next) {
+            responder = next;
+        }
+
+        private void serve() {
+            while (!socket.isClosed()) {
+                try (Socket connection = socket.accept()) {
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+                    Map<String, String> headers = new HashMap<>();
+                    String line = in.readLine();
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {
+                        int colon = line.indexOf(':');
+                        headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                    }
+                    synchronized (requests) {
+                        requests.add(headers);
+                    }
+                    responder.respond(headers, connection.getOutputStream());
+                } catch (IOException e) {
+                    // Closed by the test, or the client hung up
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
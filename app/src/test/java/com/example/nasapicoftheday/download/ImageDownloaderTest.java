@@ -0,0 +1,51 @@
+package com.example.nasapicoftheday.download;
+
+import com.example.nasapicoftheday.datamodel.DateRange;
+import com.example.nasapicoftheday.datamodel.DateSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for how ImageDownloader narrows a backfill chunk to the days still missing.
+ *
+ * @author Caitlin Ross
+ */
+public class ImageDownloaderTest {
+    private static final DateRange CHUNK = DateRange.ofEpochDays(11000, 11099);
+
+    @Test
+    public void spansFirstToLastMissingDay() {
+        DateSet missing = new DateSet();
+        missing.add(11010);
+        missing.add(11050);
+        missing.add(11020);
+
+        assertEquals(DateRange.ofEpochDays(11010, 11050), ImageDownloader.missingSpan(missing, CHUNK));
+    }
+
+    @Test
+    public void ignoresMissingDaysOutsideChunk() {
+        DateSet missing = new DateSet();
+        missing.add(10999);
+        missing.add(11099);
+        missing.add(11100);
+
+        assertEquals(DateRange.ofEpochDays(11099, 11099), ImageDownloader.missingSpan(missing, CHUNK));
+    }
+
+    @Test
+    public void wholeChunkWhenEveryDayIsMissing() {
+        assertEquals(CHUNK, ImageDownloader.missingSpan(DateSet.of(CHUNK), CHUNK));
+    }
+
+    @Test
+    public void emptyWhenNothingIsMissing() {
+        DateSet missing = new DateSet();
+        missing.add(10000);
+
+        assertTrue(ImageDownloader.missingSpan(missing, CHUNK).isEmpty());
+        assertTrue(ImageDownloader.missingSpan(new DateSet(), CHUNK).isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.nasapicoftheday.download;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ThroughputMeter, using made-up sample times.
+ *
+ * @author Caitlin Ross
+ */
+public class ThroughputMeterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void unknownUntilFirstFullSample() {
+        ThroughputMeter meter = new ThroughputMeter(0, 0);
+        meter.sample(1000, ThroughputMeter.MIN_SAMPLE_NANOS / 2);
+        assertEquals(-1, meter.getBytesPerSecond(), 0);
+        assertEquals(-1, meter.getEtaMillis(1000, 10000));
+    }
+
+    @Test
+    public void firstSampleIsTheRate() {
+        ThroughputMeter meter = new ThroughputMeter(0, 0);
+        meter.sample(100_000, SECOND);
+        assertEquals(100_000, meter.getBytesPerSecond(), 0.001);
+        assertEquals(9000, meter.getEtaMillis(100_000, 1_000_000));
+    }
+
+    @Test
+    public void averageFollowsChangeInSpeed() {
+        ThroughputMeter meter = new ThroughputMeter(0, 0);
+        meter.sample(100_000, SECOND);
+        meter.sample(100_000 + 200_000, 2 * SECOND);
+
+        double expected = ThroughputMeter.SMOOTHING * 200_000 + (1 - ThroughputMeter.SMOOTHING) * 100_000;
+        assertEquals(expected, meter.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void resumedBytesDoNotCountAsSpeed() {
+        ThroughputMeter meter = new ThroughputMeter(500_000, 0);
+        meter.sample(600_000, SECOND);
+        assertEquals(100_000, meter.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void restartFromZeroStartsOver() {
+        ThroughputMeter meter = new ThroughputMeter(500_000, 0);
+        meter.sample(600_000, SECOND);
+        // The server ignored the range and sent the whole file again
+        meter.sample(0, SECOND + 1);
+        assertEquals(-1, meter.getBytesPerSecond(), 0);
+        assertEquals(-1, meter.getEtaMillis(0, 1_000_000));
+
+        meter.sample(50_000, 2 * SECOND);
+        assertEquals(50_000, meter.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void noEtaWithoutLength() {
+        ThroughputMeter meter = new ThroughputMeter(0, 0);
+        meter.sample(100_000, SECOND);
+        assertEquals(-1, meter.getEtaMillis(100_000, -1));
+    }
+}
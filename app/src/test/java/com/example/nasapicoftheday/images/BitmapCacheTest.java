@@ -0,0 +1,34 @@
+package com.example.nasapicoftheday.images;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BitmapCache's choice of sample size.
+ *
+ * @author Caitlin Ross
+ */
+public class BitmapCacheTest {
+    @Test
+    public void fullSizeWhenPictureIsSmallerThanTarget() {
+        assertEquals(1, BitmapCache.sampleSizeFor(100, 100, 200, 200));
+    }
+
+    @Test
+    public void largestPowerOfTwoThatStillCoversTarget() {
+        // 4000 / 8 = 500 still covers 400, 4000 / 16 = 250 does not
+        assertEquals(8, BitmapCache.sampleSizeFor(4000, 3000, 400, 300));
+    }
+
+    @Test
+    public void smallerDimensionLimitsSampleSize() {
+        // Wide panorama: the height runs out first
+        assertEquals(2, BitmapCache.sampleSizeFor(8000, 800, 300, 300));
+    }
+
+    @Test
+    public void thumbnailOfTypicalApodImage() {
+        assertEquals(16, BitmapCache.sampleSizeFor(2048, 1365, 80, 80));
+    }
+}
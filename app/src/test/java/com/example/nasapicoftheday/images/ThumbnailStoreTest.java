@@ -0,0 +1,104 @@
+package com.example.nasapicoftheday.images;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ThumbnailStore's size cap and least recently used eviction.
+ *
+ * @author Caitlin Ross
+ */
+public class ThumbnailStoreTest {
+    private File directory;
+    private ThumbnailStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("thumbnails").toFile();
+        // The store only uses its context to make thumbnails, which these tests never do
+        store = new ThumbnailStore(null, directory, 300);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondCap() throws IOException {
+        add("a.jpeg", 100);
+        add("b.jpeg", 100);
+        add("c.jpeg", 100);
+        add("d.jpeg", 100);
+
+        assertEquals(300, store.getTotalBytes());
+        assertFalse(store.fileFor("a.jpeg").exists());
+        assertTrue(store.fileFor("b.jpeg").exists());
+        assertTrue(store.fileFor("d.jpeg").exists());
+    }
+
+    @Test
+    public void usingThumbnailKeepsItFromEviction() throws IOException {
+        add("a.jpeg", 100);
+        add("b.jpeg", 100);
+        add("c.jpeg", 100);
+        store.getThumbnail("a.jpeg");
+        add("d.jpeg", 100);
+
+        assertTrue(store.fileFor("a.jpeg").exists());
+        assertFalse(store.fileFor("b.jpeg").exists());
+    }
+
+    @Test
+    public void neverEvictsThumbnailJustAdded() throws IOException {
+        add("a.jpeg", 100);
+        add("big.jpeg", 500);
+
+        assertFalse(store.fileFor("a.jpeg").exists());
+        assertTrue(store.fileFor("big.jpeg").exists());
+        assertEquals(500, store.getTotalBytes());
+    }
+
+    @Test
+    public void removeDeletesFileAndCountsIt() throws IOException {
+        add("a.jpeg", 100);
+        add("b.jpeg", 100);
+        store.remove("a.jpeg");
+
+        assertFalse(store.fileFor("a.jpeg").exists());
+        assertEquals(100, store.getTotalBytes());
+    }
+
+    @Test
+    public void readsExistingThumbnailsAndSkipsTemporaryFiles() throws IOException {
+        write("a.jpeg", 100);
+        write("b.jpeg.tmp", 50);
+
+        assertEquals(100, new ThumbnailStore(null, directory, 300).getTotalBytes());
+    }
+
+    /**
+     * Writes a fake thumbnail and records it in the store, as a generated one would be.
+     */
+    private void add(String fileName, int bytes) throws IOException {
+        write(fileName, bytes);
+        store.added(fileName, bytes);
+    }
+
+    private void write(String fileName, int bytes) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(new File(directory, fileName))) {
+            out.write(new byte[bytes]);
+        }
+    }
+}
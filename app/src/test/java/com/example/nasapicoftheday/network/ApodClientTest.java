@@ -0,0 +1,128 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for how ApodClient splits a range into requests, using a local stand-in for the APOD API that answers
+ * every request with an empty array.
+ *
+ * @author Caitlin Ross
+ */
+public class ApodClientTest {
+    private ServerSocket socket;
+    /** The request target of every request received */
+    private final List<String> requests = new ArrayList<>();
+    private ApodClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        socket = new ServerSocket(0);
+        Thread thread = new Thread(this::serve, "ApodStandIn");
+        thread.setDaemon(true);
+        thread.start();
+        client = new ApodClient(new HttpClient(2000, 2000),
+                "http://127.0.0.1:" + socket.getLocalPort() + "/apod?api_key=test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        socket.close();
+    }
+
+    @Test
+    public void rangeOfMaxDaysIsOneRequest() throws IOException {
+        client.fetchRange(range("2000-01-01", ApodClient.MAX_DAYS_PER_REQUEST));
+
+        assertEquals(1, requests.size());
+        assertDates(0, "2000-01-01", "2000-04-09");
+    }
+
+    @Test
+    public void oneDayMoreIsASecondRequest() throws IOException {
+        client.fetchRange(range("2000-01-01", ApodClient.MAX_DAYS_PER_REQUEST + 1));
+
+        assertEquals(2, requests.size());
+        assertDates(0, "2000-01-01", "2000-04-09");
+        assertDates(1, "2000-04-10", "2000-04-10");
+    }
+
+    @Test
+    public void chunksFollowOnWithoutGapsOrOverlap() throws IOException {
+        client.fetchRange(range("2000-01-01", 2 * ApodClient.MAX_DAYS_PER_REQUEST + 50));
+
+        assertEquals(3, requests.size());
+        assertDates(0, "2000-01-01", "2000-04-09");
+        assertDates(1, "2000-04-10", "2000-07-18");
+        assertDates(2, "2000-07-19", "2000-09-06");
+    }
+
+    @Test
+    public void daysBeforeArchiveAreNotRequested() throws IOException {
+        // Dates before the archive cannot be made, so start from its first day's epoch day
+        int archiveStart = new Date("1995-06-16").toEpochDay();
+        client.fetchRange(DateRange.ofEpochDays(archiveStart - 15, archiveStart + 4));
+
+        assertEquals(1, requests.size());
+        assertDates(0, "1995-06-16", "1995-06-20");
+    }
+
+    /**
+     * Returns the range of a number of days from a date.
+     */
+    private static DateRange range(String first, int days) {
+        int day = new Date(first).toEpochDay();
+        return DateRange.ofEpochDays(day, day + days - 1);
+    }
+
+    /**
+     * Checks the dates a request asked for.
+     */
+    private void assertDates(int request, String start, String end) {
+        String target = requests.get(request);
+        assertTrue(target, target.contains("&start_date=" + start + "&end_date=" + end));
+    }
+
+    /**
+     * Answers each request with an empty array, one connection at a time.
+     */
+    private void serve() {
+        while (!socket.isClosed()) {
+            try (Socket connection = socket.accept()) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+                // "GET /apod?... HTTP/1.1"
+                String requestLine = in.readLine();
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    // Skip the headers
+                }
+                synchronized (requests) {
+                    requests.add(requestLine.split(" ")[1]);
+                }
+                OutputStream out = connection.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 2\r\n"
+                        + "Connection: close\r\n\r\n[]").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            } catch (IOException e) {
+                // Closed by the test, or the client hung up
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+import com.example.nasapicoftheday.datamodel.DateRange;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the ways of turning a large APOD range response into ApodMetadata on the JVM:
+ * <ul>
+ *     <li>line: the original getJSONFromURL path, a BufferedReader with an 8-character buffer read line by line
+ *     into a StringBuilder, then an org.json tree</li>
+ *     <li>tree: the whole body read into a String, then an org.json tree</li>
+ *     <li>stream: ApodJsonParser reading the body as it arrives</li>
+ * </ul>
+ * Not a unit test; run its main method with the unit test classpath. Arguments (optional): the number of days in
+ * the response (default 1000) and the number of measured rounds (default 20).
+ *
+ * @author Caitlin Ross
+ */
+public class ApodJsonParserBenchmark {
+    /** Rounds run before measuring, so the JIT has compiled every path */
+    private static final int WARMUP_ROUNDS = 10;
+
+    /**
+     * A way of reading a response body.
+     */
+    private interface Path {
+        List<ApodMetadata> read(InputStream body) throws IOException;
+    }
+
+    /**
+     * Runs the benchmark and prints the average time per response for each path.
+     *
+     * @param args the number of days and the number of measured rounds
+     * @throws IOException if a path fails
+     */
+    public static void main(String[] args) throws IOException {
+        int days = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        byte[] body = rangeResponse(days);
+        System.out.println("Response: " + days + " days, " + body.length / 1024 + " KB");
+
+        String[] names = { "line", "tree", "stream" };
+        Path[] paths = { ApodJsonParserBenchmark::readLines, ApodJsonParserBenchmark::readTree,
+                in -> new ApodJsonParser(new InputStreamReader(in, StandardCharsets.UTF_8)).readEntries() };
+        for (int i = 0; i < paths.length; i++) {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                check(paths[i].read(new ByteArrayInputStream(body)), days);
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                check(paths[i].read(new ByteArrayInputStream(body)), days);
+            }
+            double millis = (System.nanoTime() - start) / 1e6 / rounds;
+            System.out.printf("%-6s %8.2f ms per response%n", names[i], millis);
+        }
+    }
+
+    /**
+     * The original path: an 8-character BufferedReader read line by line, then an org.json tree.
+     *
+     * @param body the response body
+     * @return the entries
+     * @throws IOException if the body cannot be read or parsed
+     */
+    private static List<ApodMetadata> readLines(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 8);
+        StringBuilder sb = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line).append("\n");
+        }
+        return fromTree(sb.toString());
+    }
+
+    /**
+     * The path ApodClient used before ApodJsonParser: the whole body as a String, then an org.json tree.
+     *
+     * @param body the response body
+     * @return the entries
+     * @throws IOException if the body cannot be read or parsed
+     */
+    private static List<ApodMetadata> readTree(InputStream body) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        while ((count = body.read(buffer)) != -1) {
+            text.write(buffer, 0, count);
+        }
+        return fromTree(new String(text.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds an org.json tree from a response and reads the entries out of it.
+     *
+     * @param json the response text
+     * @return the entries
+     * @throws IOException if the text is not a valid response
+     */
+    private static List<ApodMetadata> fromTree(String json) throws IOException {
+        try {
+            JSONArray array = new JSONArray(json);
+            List<ApodMetadata> entries = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject entry = array.getJSONObject(i);
+                entries.add(new ApodMetadata(
+                        new Date(entry.getString("date")),
+                        entry.getString("title"),
+                        entry.optString("explanation", null),
+                        entry.getString("url"),
+                        entry.optString("hdurl", null),
+                        entry.optString("media_type", null)));
+            }
+            return entries;
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Builds a range response shaped like the API's, with an explanation of typical length in each entry.
+     *
+     * @param days the number of entries
+     * @return the response body
+     */
+    private static byte[] rangeResponse(int days) {
+        StringBuilder explanation = new StringBuilder();
+        while (explanation.length() < 1500) {
+            explanation.append("Light from distant galaxies is bent by the \\\"dark matter\\\" of the cluster. ");
+        }
+        DateRange range = DateRange.ofEpochDays(new Date("2000-01-01").toEpochDay(),
+                new Date("2000-01-01").toEpochDay() + days - 1);
+        StringBuilder json = new StringBuilder("[");
+        range.forEachDay(day -> {
+            String date = Date.ofEpochDay(day).toString();
+            if (json.length() > 1) {
+                json.append(",");
+            }
+            json.append("{\"copyright\":\"Observatory Team\",\"date\":\"").append(date)
+                    .append("\",\"explanation\":\"").append(explanation)
+                    .append("\",\"hdurl\":\"https://apod.nasa.gov/apod/image/").append(date).append("_hd.jpg\"")
+                    .append(",\"media_type\":\"image\",\"service_version\":\"v1\",\"title\":\"Picture ")
+                    .append(date).append("\",\"url\":\"https://apod.nasa.gov/apod/image/").append(date)
+                    .append(".jpg\"}\n");
+        });
+        return json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure a path read every entry, so no path is measured doing less work than the others.
+     *
+     * @param entries the entries read
+     * @param days the number of entries expected
+     */
+    private static void check(List<ApodMetadata> entries, int days) {
+        if (entries.size() != days) {
+            throw new IllegalStateException("Read " + entries.size() + " of " + days + " entries");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.nasapicoftheday.network;
+
+import com.example.nasapicoftheday.datamodel.Date;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ApodJsonParser.
+ *
+ * @author Caitlin Ross
+ */
+public class ApodJsonParserTest {
+    private static final String ENTRY = "{\"copyright\":\"Someone\",\"date\":\"2020-01-02\"," +
+            "\"explanation\":\"Line one\\nLine \\\"two\\\" \\u00e9\",\"hdurl\":\"https://apod.nasa.gov/hd.jpg\"," +
+            "\"media_type\":\"image\",\"service_version\":\"v1\",\"title\":\"Stars\"," +
+            "\"url\":\"https://apod.nasa.gov/image.jpg\"}";
+
+    @Test
+    public void readsSingleEntry() throws IOException {
+        ApodMetadata entry = new ApodJsonParser(new StringReader(ENTRY)).readEntry();
+
+        assertEquals(new Date("2020-01-02"), entry.getDate());
+        assertEquals("Stars", entry.getTitle());
+        assertEquals("Line one\nLine \"two\" \u00e9", entry.getExplanation());
+        assertEquals("https://apod.nasa.gov/image.jpg", entry.getUrl());
+        assertEquals("https://apod.nasa.gov/hd.jpg", entry.getHdUrl());
+        assertTrue(entry.isImage());
+    }
+
+    @Test
+    public void skipsUnusedValuesOfEveryKind() throws IOException {
+        String json = "{ \"date\" : \"2020-01-02\", \"nested\": {\"a\": [1, {\"b\": \"}]\"}], \"c\": null},\n" +
+                "\t\"count\": -1.5e3, \"flag\": true, \"hdurl\": null, \"title\": \"Stars\", " +
+                "\"url\": \"https://apod.nasa.gov/image.jpg\", \"list\": [] }";
+        ApodMetadata entry = new ApodJsonParser(new StringReader(json)).readEntry();
+
+        assertEquals("Stars", entry.getTitle());
+        assertNull(entry.getHdUrl());
+        assertNull(entry.getExplanation());
+    }
+
+    @Test
+    public void readsArrayAndSkipsBadEntries() throws IOException {
+        String json = "[" + ENTRY + ", {\"date\":\"2020-01-03\",\"title\":\"No URL\"}, " +
+                "{\"date\":\"1900-01-01\",\"title\":\"Too early\",\"url\":\"u\"}, " +
+                "{\"date\":\"2020-01-04\",\"title\":\"Video\",\"url\":\"v\",\"media_type\":\"video\"}]";
+        List<ApodMetadata> entries = new ApodJsonParser(new StringReader(json)).readEntries();
+
+        assertEquals(2, entries.size());
+        assertEquals("Stars", entries.get(0).getTitle());
+        assertEquals(new Date("2020-01-04"), entries.get(1).getDate());
+        assertFalse(entries.get(1).isImage());
+    }
+
+    @Test
+    public void readsEmptyArray() throws IOException {
+        assertTrue(new ApodJsonParser(new StringReader(" [ ] ")).readEntries().isEmpty());
+    }
+
+    @Test
+    public void readsStringsSplitAcrossReads() throws IOException {
+        // A reader that hands out one character at a time splits every token across buffer refills
+        Reader trickle = new StringReader(ENTRY) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        ApodMetadata entry = new ApodJsonParser(trickle).readEntry();
+        assertEquals("Line one\nLine \"two\" \u00e9", entry.getExplanation());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedResponse() throws IOException {
+        new ApodJsonParser(new StringReader("[" + ENTRY.substring(0, 60))).readEntries();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsEntryWithoutRequiredField() throws IOException {
+        new ApodJsonParser(new StringReader("{\"date\":\"2020-01-02\",\"title\":\"Stars\"}")).readEntry();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.nasapicoftheday.network;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SingleFlight, using calls that block until the test lets them finish.
+ *
+ * @author Caitlin Ross
+ */
+public class SingleFlightTest {
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @Test
+    public void concurrentCallersShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Future<String> first = callers.submit(() -> flights.run("2020-01-01", () -> {
+            calls.incrementAndGet();
+            inCall.countDown();
+            finish.await();
+            return "result";
+        }));
+        assertTrue(inCall.await(1, TimeUnit.SECONDS));
+        Future<String> second = callers.submit(() -> flights.run("2020-01-01", () -> {
+            calls.incrementAndGet();
+            return "second";
+        }));
+
+        // Give the second caller time to join the call in flight
+        Thread.sleep(100);
+        finish.countDown();
+        assertEquals("result", first.get(1, TimeUnit.SECONDS));
+        assertEquals("result", second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertFalse(flights.isInFlight("2020-01-01"));
+    }
+
+    @Test
+    public void finishedCallIsNotCached() throws IOException {
+        assertEquals("a", flights.run("key", () -> "a"));
+        assertEquals("b", flights.run("key", () -> "b"));
+    }
+
+    @Test
+    public void waitingCallerSeesFailure() throws Exception {
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        IOException failure = new IOException("HTTP 503");
+
+        Future<String> first = callers.submit(() -> flights.run("key", () -> {
+            inCall.countDown();
+            finish.await();
+            throw failure;
+        }));
+        assertTrue(inCall.await(1, TimeUnit.SECONDS));
+        Future<String> second = callers.submit(() -> flights.run("key", () -> "unused"));
+        Thread.sleep(100);
+        finish.countDown();
+
+        try {
+            first.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause().getCause());
+        }
+    }
+
+    @Test
+    public void waitingCallerRetriesAfterCancelledCall() throws Exception {
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Future<String> first = callers.submit(() -> flights.run("key", () -> {
+            inCall.countDown();
+            finish.await();
+            throw new InterruptedIOException("cancelled");
+        }));
+        assertTrue(inCall.await(1, TimeUnit.SECONDS));
+        Future<String> second = callers.submit(() -> flights.run("key", () -> "own result"));
+        Thread.sleep(100);
+        finish.countDown();
+
+        try {
+            first.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+        assertEquals("own result", second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitingCallerSeesTimeoutWithoutRetrying() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Future<String> first = callers.submit(() -> flights.run("key", () -> {
+            calls.incrementAndGet();
+            inCall.countDown();
+            finish.await();
+            throw new SocketTimeoutException("Read timed out");
+        }));
+        assertTrue(inCall.await(1, TimeUnit.SECONDS));
+        Future<String> second = callers.submit(() -> flights.run("key", () -> {
+            calls.incrementAndGet();
+            return "retried";
+        }));
+        Thread.sleep(100);
+        finish.countDown();
+
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getCause() instanceof SocketTimeoutException);
+        }
+        assertEquals(1, calls.get());
+        try {
+            first.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            // The caller that ran the call gets the timeout itself
+        }
+    }
+}